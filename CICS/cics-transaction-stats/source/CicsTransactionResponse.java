@@ -1,5 +1,4 @@
 import java.io.*;
-import java.time.*;
 import java.util.*;
 import java.util.stream.Collectors;
 import static java.util.Comparator.comparing;
@@ -91,7 +90,7 @@ public class CicsTransactionResponse
             .sorted(Map.Entry.comparingByKey())
             .forEachOrdered(applidSection -> 
             {
-                System.out.format("%n%-10s %-4s %15s %15s %15s %15s %15s %15s %15s%n", 
+                System.out.format("%n%-10s %-4s %15s %15s %15s %15s %15s %15s %15s %15s %15s %15s%n", 
                         "APPLID", 
                         "Tran", 
                         "Count", 
@@ -100,13 +99,16 @@ public class CicsTransactionResponse
                         "Avg Elapsed", 
                         "Avg Term Waits", 
                         "Avg Term Wait", 
-                        "Avg Response");
+                        "Avg Response",
+                        "P50 Response",
+                        "P95 Response",
+                        "P99 Response");
                 applidSection.getValue().stream()
                     .sorted(comparing(e -> e.getKey().tran()))
                     .forEachOrdered(e -> 
                     {
                         TransactionData tx = e.getValue();
-                        System.out.format("%-10s %-4s %15d %15f %15f %15f %15.1f %15f %15f%n", 
+                        System.out.format("%-10s %-4s %15d %15f %15f %15f %15.1f %15f %15f %15f %15f %15f%n", 
                                 e.getKey().applid(),
                                 e.getKey().tran(),
                                 tx.getCount(), 
@@ -115,7 +117,10 @@ public class CicsTransactionResponse
                                 tx.getAvgElapsed(), 
                                 tx.getAvgTciowttCount(), 
                                 tx.getAvgTciowttTime(),
-                                tx.getAvgResponse());
+                                tx.getAvgResponse(),
+                                tx.getResponsePercentile(50),
+                                tx.getResponsePercentile(95),
+                                tx.getResponsePercentile(99));
                     });
                 System.out.println();
             });
@@ -169,11 +174,18 @@ public class CicsTransactionResponse
         public void add(PerformanceRecord txData) 
         {
             count++;
-            elapsed += Utils.ToSeconds(
-                    Duration.between(txData.getField(Field.START), txData.getField(Field.STOP)));
+            // elapsedSeconds() calculates the time from START and STOP
+            // without creating ZonedDateTime objects
+            double txElapsed = txData.elapsedSeconds();
+            elapsed += txElapsed;
             cpu += txData.getField(Field.USRCPUT).timerSeconds();
-            tciowttCount += txData.getField(Field.TCIOWTT).count();
-            tciowttTime += txData.getField(Field.TCIOWTT).timerSeconds();
+            CicsClock tciowtt = txData.getField(Field.TCIOWTT);
+            tciowttCount += tciowtt.count();
+            tciowttTime += tciowtt.timerSeconds();
+            // average response time for the terminal interactions in
+            // this transaction
+            responseHistogram.record(
+                    (txElapsed - tciowtt.timerSeconds()) / (1 + tciowtt.count()));
         }
 
         public int getCount() 
@@ -212,10 +224,114 @@ public class CicsTransactionResponse
             return responseCount != 0 ? (elapsed - tciowttTime) / responseCount : 0.0;
         }
 
+        /**
+         * Response time percentile, from a histogram accurate to
+         * within about 1.6%
+         * @param percentile the percentile e.g. 95
+         * @return the response time in seconds
+         */
+        public double getResponsePercentile(double percentile) 
+        {
+            return responseHistogram.percentile(percentile);
+        }
+
         private int count = 0;
         private double elapsed = 0;
         private double cpu = 0;
         private long tciowttCount = 0;
         private double tciowttTime = 0;
+        private LatencyHistogram responseHistogram = new LatencyHistogram();
+    }
+
+    /**
+     * A histogram of response times with logarithmic buckets, used to
+     * calculate percentiles without keeping every value.
+     *
+     * Values are recorded in microseconds. Values below 128 microseconds
+     * are counted exactly. Above that, each power of 2 is divided into 64
+     * buckets, so a percentile is accurate to within 1/64 (about 1.6%)
+     * of the value. Values of 2^36 microseconds (about 19 hours) or
+     * more are counted in the highest bucket.
+     *
+     * The bucket array grows to the highest bucket used, up to 1,984
+     * buckets (about 16KB).
+     */
+    private static class LatencyHistogram
+    {
+        private static final int SUB_BUCKET_BITS = 6;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final long MAX_VALUE = (1L << 36) - 1;
+        private static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+        private long[] counts = new long[2 * SUB_BUCKETS];
+        private long totalCount = 0;
+        private long maxValue = 0;
+
+        /**
+         * Record a value
+         * @param seconds the response time in seconds
+         */
+        void record(double seconds)
+        {
+            long micros = Math.min(MAX_VALUE, Math.max(0, Math.round(seconds * 1_000_000)));
+            int index = bucketIndex(micros);
+            if (index >= counts.length)
+            {
+                counts = Arrays.copyOf(counts, Math.min(BUCKETS, Math.max(index + 1, counts.length * 2)));
+            }
+            counts[index]++;
+            totalCount++;
+            maxValue = Math.max(maxValue, micros);
+        }
+
+        /**
+         * Get the value at a percentile. The value returned is the highest
+         * value in the bucket containing the percentile, but not more than
+         * the highest value recorded.
+         * @param percentile the percentile e.g. 99
+         * @return the value in seconds, or 0 if no values have been recorded
+         */
+        double percentile(double percentile)
+        {
+            if (totalCount == 0)
+            {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++)
+            {
+                cumulative += counts[i];
+                if (cumulative >= target)
+                {
+                    return Math.min(highestValue(i), maxValue) / 1_000_000.0;
+                }
+            }
+            return maxValue / 1_000_000.0;
+        }
+
+        private static int bucketIndex(long micros)
+        {
+            if (micros < 2 * SUB_BUCKETS)
+            {
+                return (int) micros;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+        }
+
+        /**
+         * The highest value that is counted in a bucket
+         */
+        private static long highestValue(int index)
+        {
+            if (index < 2 * SUB_BUCKETS)
+            {
+                return index;
+            }
+            int shift = index / SUB_BUCKETS - 1;
+            long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+            return ((subBucket + 1) << shift) - 1;
+        }
     }
 }
@@ -1,7 +1,9 @@
 package com.smfreports.cics;
 
 import java.io.*;
+import java.nio.file.*;
 import java.time.*;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 import com.blackhillsoftware.smf.*;
@@ -28,12 +30,61 @@ import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
  */
 public class CicsServiceClass 
 {
+    private static void printUsage()
+    {
+        System.out.println("Usage: CicsServiceClass [options] <input-name> <input-name2> ...");
+        System.out.println("<input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");          
+        System.out.println("--dictionaries dir : dictionary directory created by ExtractDictionaries --store");
+        System.out.println("--applid A[,B...]  : include only these APPLIDs");
+        System.out.println("--from time        : include records from this SMF time, e.g. 2025-09-10T08:00");
+        System.out.println("--to time          : include records before this SMF time");
+    }
+
     public static void main(String[] args) throws IOException 
     {
         if (args.length < 1)
         {
-            System.out.println("Usage: CicsServiceClass <input-name> <input-name2> ...");
-            System.out.println("<input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");          
+            printUsage();
+            return;
+        }
+
+        // Optional dictionary store, used for APPLIDs without a 
+        // dictionary in the input
+        DictionaryDirectory store = null;
+        // Select CICS records before they are decompressed
+        Cics110Prefilter prefilter = new Cics110Prefilter();
+        List<String> names = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                case "--dictionaries":
+                    store = new DictionaryDirectory(args[++i]);
+                    break;
+                case "--applid":
+                    prefilter.applids(args[++i].split(","));
+                    break;
+                case "--from":
+                    prefilter.from(LocalDateTime.parse(args[++i]));
+                    break;
+                case "--to":
+                    prefilter.to(LocalDateTime.parse(args[++i]));
+                    break;
+                default:
+                    names.add(args[i]);
+                    break;
+                }
+            }
+        }
+        catch (DateTimeParseException | ArrayIndexOutOfBoundsException e)
+        {
+            names.clear();
+        }
+        if (names.isEmpty())
+        {
+            printUsage();
             return;
         }
                 
@@ -58,7 +109,7 @@ public class CicsServiceClass
         // SmfRecordReader.fromName(...) accepts a filename, a DD name in the
         // format //DD:DDNAME or MVS dataset name in the form //'DATASET.NAME'
         
-        for (String name : args) // process input names provided as arguments
+        for (String name : names) // process input names provided as arguments
         {
             try (SmfRecordReader reader = SmfRecordReader.fromName(name)
                     .include(110, 1) // CICS records
@@ -66,11 +117,18 @@ public class CicsServiceClass
             {     
                 for (SmfRecord record : reader) 
                 {
+                    if (!prefilter.test(record)) continue;
                     switch (record.recordType())
                     {
                     case 110:
                         // Process CICS record
                         Smf110Record r110 = Smf110Record.from(record);
+                        if (!r110.haveDictionary() && store != null
+                                && store.load(r110.mnProductSection().smfmnprn()))
+                        {
+                            // try again with the dictionaries from the store
+                            r110 = Smf110Record.from(record);
+                        }
                         
                         if (r110.haveDictionary()) 
                         {
@@ -153,6 +211,11 @@ public class CicsServiceClass
                     (double)(Smf110Record.getDecompressedByteCount() - Smf110Record.getCompressedByteCount()) 
                             / Smf110Record.getDecompressedByteCount() * 100);
         }
+        
+        if (prefilter.getSkippedRecords() > 0)
+        {
+            prefilter.printStatistics();
+        }
     }
 
     /**
@@ -339,4 +402,153 @@ public class CicsServiceClass
         String        getDescription() { return description; }
         String        getGoal()        { return goal; }
     }
+
+    /**
+     * Select CICS records using only the SMF header and the product
+     * section, so records that are not required are skipped before
+     * they are decompressed. Accessing any other section of a
+     * compressed record causes it to be decompressed, which uses a
+     * significant amount of CPU time.
+     * <p>
+     * Dictionary records are always accepted, because they are written
+     * when the region starts monitoring and are needed by transaction
+     * records in any time range. They are not counted as accepted or
+     * skipped.
+     * <p>
+     * The same class is nested in CicsTransactionSummary and
+     * CicsServiceClass so each program can run as a single file source
+     * code program. Changes need to be made in both.
+     */
+    private static class Cics110Prefilter
+    {
+        private Set<String> applids = null;
+        private LocalDateTime from = null;
+        private LocalDateTime to = null;
+
+        private long acceptedRecords = 0;
+        private long acceptedBytes = 0;
+        private long skippedRecords = 0;
+        private long skippedBytes = 0;
+
+        void applids(String... applids)
+        {
+            this.applids = new HashSet<>();
+            for (String applid : applids)
+            {
+                this.applids.add(applid.trim());
+            }
+        }
+
+        void from(LocalDateTime from)
+        {
+            this.from = from;
+        }
+
+        void to(LocalDateTime to)
+        {
+            this.to = to;
+        }
+
+        /**
+         * Test whether a record should be processed
+         * @param record the SMF record
+         * @return true if the record is selected, is a dictionary record
+         * or is not a type 110 record
+         */
+        boolean test(SmfRecord record)
+        {
+            if (record.recordType() != 110)
+            {
+                return true;
+            }
+            // the product section can be read without decompressing the record
+            if (Smf110Record.from(record).mnProductSection().monitoringClassDictionary())
+            {
+                return true;
+            }
+            boolean include = include(record);
+            if (include)
+            {
+                acceptedRecords++;
+                acceptedBytes += record.recordLength();
+            }
+            else
+            {
+                skippedRecords++;
+                skippedBytes += record.recordLength();
+            }
+            return include;
+        }
+
+        private boolean include(SmfRecord record)
+        {
+            // SMF time is in the header, test it before the APPLID
+            if (from != null || to != null)
+            {
+                LocalDateTime time = record.smfDateTime();
+                if (from != null && time.isBefore(from)) return false;
+                if (to != null && !time.isBefore(to)) return false;
+            }
+            // the product section can be read without decompressing the record
+            if (applids != null
+                    && !applids.contains(Smf110Record.from(record).mnProductSection().smfmnprn().trim()))
+            {
+                return false;
+            }
+            return true;
+        }
+
+        long getSkippedRecords()
+        {
+            return skippedRecords;
+        }
+
+        void printStatistics()
+        {
+            System.out.format(
+                    "%n%nPrefilter: %,d records (%,d bytes) accepted, %,d records (%,d bytes) skipped without decompression.%n",
+                    acceptedRecords, acceptedBytes, skippedRecords, skippedBytes);
+        }
+    }
+
+    /**
+     * A directory of CICS dictionaries by APPLID, created by
+     * ExtractDictionaries --store. The dictionaries for an APPLID are
+     * loaded the first time a record for the APPLID has no dictionary.
+     * This is the loading part of DictionaryStore, nested so the program
+     * can run as a single file source code program.
+     */
+    private static class DictionaryDirectory
+    {
+        DictionaryDirectory(String directory)
+        {
+            this.directory = Paths.get(directory);
+        }
+
+        /**
+         * Load the dictionaries for an APPLID if they have not been
+         * loaded already
+         * @param applid the APPLID
+         * @return true if dictionaries were loaded
+         * @throws IOException if the dictionaries can't be read
+         */
+        boolean load(String applid) throws IOException
+        {
+            applid = applid.trim();
+            if (!loaded.add(applid))
+            {
+                return false;
+            }
+            Path file = directory.resolve(applid + ".dict");
+            if (!Files.exists(file))
+            {
+                return false;
+            }
+            Smf110Record.dictionariesFromName(file.toString());
+            return true;
+        }
+
+        private final Path directory;
+        private final Set<String> loaded = new HashSet<>();
+    }
 }
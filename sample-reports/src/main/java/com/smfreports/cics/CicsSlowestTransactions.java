@@ -0,0 +1,230 @@
+package com.smfreports.cics;
+
+import java.io.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.*;
+
+import com.blackhillsoftware.smf.*;
+import com.blackhillsoftware.smf.cics.*;
+import com.blackhillsoftware.smf.cics.monitoring.*;
+import com.blackhillsoftware.smf.cics.monitoring.fields.*;
+
+/**
+ * Report the slowest CICS transactions by elapsed time, overall or
+ * for each APPLID or APPLID and transaction.
+ * <p>
+ * Transactions are kept in a bounded heap (TopN), so memory use
+ * depends on the number of transactions reported, not the number
+ * of transactions in the input. Only the fields required for the
+ * report are kept for each transaction.
+ * <p>
+ * Records are processed in input order, so dictionary records in the
+ * input are processed before the transaction records that need them.
+ * If dictionaries are loaded using --dictionaries, records are
+ * processed using a parallel stream. Transactions can then be skipped
+ * if their dictionary is only in the input and not in the dictionary
+ * directory.
+ */
+public class CicsSlowestTransactions
+{
+    private static void printUsage()
+    {
+        System.out.println("Usage: CicsSlowestTransactions [options] <input-name> <input-name2> ...");
+        System.out.println("<input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");
+        System.out.println("--top n             : number of transactions to report for each group, default 100");
+        System.out.println("--by applid|tran    : report the slowest transactions for each APPLID, or APPLID and TRAN");
+        System.out.println("--dictionaries dir  : DictionaryStore directory created by ExtractDictionaries --store");
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int top = 100;
+        String by = null;
+        DictionaryStore store = null;
+        List<String> names = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                case "--top":
+                    top = Integer.parseInt(args[++i]);
+                    break;
+                case "--by":
+                    by = args[++i];
+                    if (!by.equals("applid") && !by.equals("tran"))
+                    {
+                        names.clear();
+                        i = args.length;
+                    }
+                    break;
+                case "--dictionaries":
+                    store = new DictionaryStore(args[++i]);
+                    break;
+                default:
+                    names.add(args[i]);
+                    break;
+                }
+            }
+        }
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+        {
+            names.clear();
+        }
+        if (names.isEmpty() || top < 1)
+        {
+            printUsage();
+            return;
+        }
+
+        if (store != null)
+        {
+            for (String applid : store.applids())
+            {
+                store.load(applid);
+            }
+        }
+
+        String grouping = by;
+        int n = top;
+        AtomicLong noDictionary = new AtomicLong();
+        Map<String, TopN<SlowTransaction>> slowest = new TreeMap<>();
+
+        for (String name : names)
+        {
+            try (SmfRecordReader reader = SmfRecordReader.fromName(name)
+                    .include(110, Smf110Record.SMFMNSTY))
+            {
+                // process in parallel only if the dictionaries were
+                // loaded first, otherwise a transaction record could be
+                // processed before the dictionary it needs
+                Stream<SmfRecord> records = store != null
+                        ? reader.stream().parallel()
+                        : reader.stream();
+                
+                Map<String, TopN<SlowTransaction>> result = records
+                    .map(record -> Smf110Record.from(record))
+                    .filter(r110 ->
+                    {
+                        if (r110.haveDictionary()) return true;
+                        noDictionary.incrementAndGet();
+                        return false;
+                    })
+                    .flatMap(r110 ->
+                    {
+                        String applid = r110.mnProductSection().smfmnprn();
+                        return r110.performanceRecords().stream()
+                                .map(tx -> new Transaction(applid, tx));
+                    })
+                    .collect(Collectors.groupingBy(tx -> groupKey(tx, grouping),
+                            TopN.collector(n,
+                                    tx -> tx.tx.elapsedSeconds(),
+                                    SlowTransaction::new)));
+
+                result.forEach((key, value) -> slowest.merge(key, value, TopN::merge));
+            }
+        }
+
+        writeReport(slowest);
+
+        if (noDictionary.get() > 0)
+        {
+            System.out.format(
+                    "%n%nSkipped %,d records because no applicable dictionary was found.",
+                    noDictionary.get());
+        }
+    }
+
+    private static String groupKey(Transaction tx, String by)
+    {
+        if (by == null) return "";
+        if (by.equals("applid")) return tx.applid;
+        return tx.applid + " " + tx.tx.getField(Field.TRAN);
+    }
+
+    private static void writeReport(Map<String, TopN<SlowTransaction>> slowest)
+    {
+        slowest.forEach((group, transactions) ->
+        {
+            // Headings
+            if (!group.isEmpty())
+            {
+                System.out.format("%n%s", group);
+            }
+            System.out.format("%n%-8s %-4s %-8s %-8s %-26s %12s %12s %12s %12s%n%n",
+                    "APPLID",
+                    "Tran",
+                    "Program",
+                    "User",
+                    "Start",
+                    "Elapsed",
+                    "CPU",
+                    "Disp Wait",
+                    "Suspend");
+
+            for (SlowTransaction tx : transactions.toList())
+            {
+                // write detail line
+                System.out.format("%-8s %-4s %-8s %-8s %-26s %12.6f %12.6f %12.6f %12.6f%n",
+                        tx.applid,
+                        tx.tran,
+                        tx.program,
+                        tx.userid,
+                        tx.start,
+                        tx.elapsed,
+                        tx.cpu,
+                        tx.dispatchWait,
+                        tx.suspend);
+            }
+        });
+    }
+
+    /**
+     * A transaction with the APPLID from the record
+     */
+    private static class Transaction
+    {
+        Transaction(String applid, PerformanceRecord tx)
+        {
+            this.applid = applid;
+            this.tx = tx;
+        }
+
+        final String applid;
+        final PerformanceRecord tx;
+    }
+
+    /**
+     * The fields reported for a transaction, so the PerformanceRecord
+     * and the SMF record data are not retained.
+     */
+    private static class SlowTransaction
+    {
+        SlowTransaction(Transaction transaction)
+        {
+            PerformanceRecord tx = transaction.tx;
+            applid = transaction.applid;
+            tran = tx.getField(Field.TRAN);
+            program = tx.getField(Field.PGMNAME);
+            userid = tx.getField(Field.USERID);
+            start = tx.getField(Field.START).toLocalDateTime();
+            elapsed = tx.elapsedSeconds();
+            cpu = tx.getField(Field.USRCPUT).timerSeconds();
+            dispatchWait = tx.getField(Field.DISPWTT).timerSeconds();
+            suspend = tx.getField(Field.SUSPTIME).timerSeconds();
+        }
+
+        final String applid;
+        final String tran;
+        final String program;
+        final String userid;
+        final LocalDateTime start;
+        final double elapsed;
+        final double cpu;
+        final double dispatchWait;
+        final double suspend;
+    }
+}
@@ -136,8 +136,16 @@ public class CicsTransactionSearch
 //                            Comparator.comparing(tx -> tx.getField(Field.USRCPUT))))
 //                     .stream()
                                         
-                    // Limit number of matching entries
-                    .limit(1000)
+                    // Keep the 1000 slowest matching transactions. Only 1000
+                    // transactions are kept in memory, and this works with
+                    // parallel streams i.e. reader.stream().parallel()
+                    .collect(Top.values(1000, 
+                            Comparator.comparingDouble(PerformanceRecord::elapsedSeconds)))
+                    .stream()
+                    
+                    // Alternatively, limit to the first 1000 matching entries
+                    // (remove the collect above)
+//                    .limit(1000)
                     
                     .forEachOrdered(tx ->  // "Ordered" in case we applied a sort 
                     {
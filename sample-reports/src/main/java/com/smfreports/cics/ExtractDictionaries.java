@@ -1,6 +1,8 @@
 package com.smfreports.cics;
 
 import java.io.*;
+import java.nio.file.*;
+import java.util.*;
 
 import com.blackhillsoftware.smf.SmfRecord;
 import com.blackhillsoftware.smf.SmfRecordReader;
@@ -10,18 +12,42 @@ import com.blackhillsoftware.smf.cics.Smf110Record;
 public class ExtractDictionaries
 {
     private static void printUsage() {
-        System.out.println("Usage: ExtractDictionaries input-file output-file");
+        System.out.println("Usage: ExtractDictionaries [--store directory] input-file [output-file]");
         System.out.println("");
         System.out.println("Search for CICS Dictionaries in input-file and write them to output-file");
+        System.out.println("and/or add them to a dictionary store.");
         System.out.println("");
+        System.out.println("  --store dir  Add dictionaries to a file for each APPLID in directory dir,");
+        System.out.println("               if they are not already in the directory.");
         System.out.println("  input-file   File containing SMF records. Binary data, RECFM=U or V[B]");
         System.out.println("               including RDW.");
-        System.out.println("  output-file  Output-file for dictionaries.");
+        System.out.println("  output-file  Output-file for dictionaries. Optional if --store is");
+        System.out.println("               specified.");
     }
     
     public static void main(String[] args) throws IOException
     {
-        if (args.length < 2 || args[0].equals("--help") || args[0].equals("-h"))
+        if (args.length < 1 || args[0].equals("--help") || args[0].equals("-h"))
+        {
+            printUsage();
+            System.exit(0);
+        }
+
+        String storeName = null;
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("--store") && i + 1 < args.length)
+            {
+                storeName = args[++i];
+            }
+            else
+            {
+                names.add(args[i]);
+            }
+        }
+        if (names.isEmpty() || names.size() > 2 
+                || (names.size() == 1 && storeName == null))
         {
             printUsage();
             System.exit(0);
@@ -29,13 +55,15 @@ public class ExtractDictionaries
                 
         // Open reader and writer classes
         try (
-            SmfRecordReader reader = SmfRecordReader.fromName(args[0]);                
-            SmfRecordWriter writer = SmfRecordWriter.fromName(args[1])
+            SmfRecordReader reader = SmfRecordReader.fromName(names.get(0));                
+            SmfRecordWriter writer = names.size() > 1 ? SmfRecordWriter.fromName(names.get(1)) : null
             )        
         {
+            DictionaryDirectory store = storeName != null ? new DictionaryDirectory(storeName) : null;
             reader.include(110, 1);
             int in = 0;
             int out = 0;
+            int added = 0;
             for (SmfRecord record : reader)
             {
                 Smf110Record r110 = Smf110Record.from(record);
@@ -43,10 +71,21 @@ public class ExtractDictionaries
                 if (r110.mnProductSection().monitoringClassDictionary())
                 {
                     out++;
-                    writer.write(record);
+                    if (writer != null)
+                    {
+                        writer.write(record);
+                    }
+                    if (store != null && store.add(record))
+                    {
+                        added++;
+                    }
                 }
             }
-            System.out.format("Finished, %d records in, %d records out.%n", in, out);            
+            System.out.format("Finished, %d records in, %d records out.%n", in, out);
+            if (store != null)
+            {
+                System.out.format("%d dictionaries added to store %s.%n", added, storeName);
+            }
         }
 
         catch (Exception e)
@@ -54,5 +93,70 @@ public class ExtractDictionaries
             printUsage();
             throw e;
         }
-    }   
+    }
+
+    /**
+     * A directory of CICS dictionaries with a file APPLID.dict of
+     * dictionary records for each APPLID, the format read by
+     * DictionaryStore. This is the only code that writes the directory.
+     * A dictionary is identified by the APPLID, system and SMF time of
+     * the dictionary record, and is only added if it is not already in
+     * the directory. Nested so the program can run as a single file
+     * source code program.
+     */
+    private static class DictionaryDirectory
+    {
+        DictionaryDirectory(String directory)
+        {
+            this.directory = Paths.get(directory);
+        }
+
+        /**
+         * Add a dictionary record if it is not already in the directory.
+         * @param record a SMF type 110 monitoring dictionary record
+         * @return true if the dictionary was added
+         * @throws IOException if the directory can't be read or written
+         */
+        boolean add(SmfRecord record) throws IOException
+        {
+            String applid = Smf110Record.from(record).mnProductSection().smfmnprn().trim();
+            Path file = directory.resolve(applid + ".dict");
+            Set<String> applidKeys = keys.get(applid);
+            if (applidKeys == null)
+            {
+                // read the keys of the dictionaries already stored
+                applidKeys = new HashSet<>();
+                if (Files.exists(file))
+                {
+                    try (SmfRecordReader reader = SmfRecordReader.fromName(file.toString()))
+                    {
+                        for (SmfRecord existing : reader)
+                        {
+                            applidKeys.add(key(existing));
+                        }
+                    }
+                }
+                keys.put(applid, applidKeys);
+            }
+            if (!applidKeys.add(key(record)))
+            {
+                return false;
+            }
+            Files.createDirectories(directory);
+            try (OutputStream out = Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND))
+            {
+                out.write(record.getBytes());
+            }
+            return true;
+        }
+
+        private static String key(SmfRecord record)
+        {
+            return record.system() + " " + record.smfDateTime();
+        }
+
+        private final Path directory;
+        private final Map<String, Set<String>> keys = new HashMap<>();
+    }
 }
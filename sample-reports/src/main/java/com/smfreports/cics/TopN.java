@@ -0,0 +1,163 @@
+package com.smfreports.cics;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.Collector;
+
+/**
+ * Keep the N entries with the highest values of a key, e.g. the
+ * slowest transactions by elapsed time.
+ * <p>
+ * Entries are kept in a min-heap of size N. A new entry is only
+ * added if its key is higher than the lowest key in the heap, so
+ * memory use depends on N rather than the number of entries.
+ * <p>
+ * The key is calculated once for each entry. If a projection is
+ * used, it is only called for entries that are added, so it can
+ * copy the fields required for output from a PerformanceRecord
+ * without creating an object for every transaction.
+ * <p>
+ * The collectors can be used with parallel streams, and with
+ * Collectors.groupingBy to find the top N for each group:
+ * <pre>
+ * Map&lt;String, TopN&lt;PerformanceRecord&gt;&gt; slowest = transactions
+ *     .collect(Collectors.groupingBy(tx -&gt; tx.getField(Field.TRAN),
+ *         TopN.collector(10, PerformanceRecord::elapsedSeconds)));
+ * </pre>
+ *
+ * @param <T> the type of the entries kept
+ */
+public class TopN<T>
+{
+    private final int n;
+    private final PriorityQueue<Entry<T>> heap;
+
+    public TopN(int n)
+    {
+        if (n < 1)
+        {
+            throw new IllegalArgumentException("N must be at least 1: " + n);
+        }
+        this.n = n;
+        heap = new PriorityQueue<>(Math.min(n, 1024),
+                Comparator.comparingDouble((Entry<T> entry) -> entry.key));
+    }
+
+    /**
+     * Create a collector to find the N values with the highest keys.
+     * @param <T> the type of the values
+     * @param n the number of values to keep
+     * @param key a function to get the key for a value
+     * @return a collector producing a TopN
+     */
+    public static <T> Collector<T, ?, TopN<T>> collector(int n,
+            ToDoubleFunction<? super T> key)
+    {
+        return collector(n, key, Function.identity());
+    }
+
+    /**
+     * Create a collector to find the N values with the highest keys,
+     * keeping a projection of each value.
+     * @param <R> the type of the input values
+     * @param <T> the type kept
+     * @param n the number of values to keep
+     * @param key a function to get the key for an input value
+     * @param projection a function to create the value to keep,
+     * called only for values that are added
+     * @return a collector producing a TopN
+     */
+    public static <R, T> Collector<R, ?, TopN<T>> collector(int n,
+            ToDoubleFunction<? super R> key,
+            Function<? super R, ? extends T> projection)
+    {
+        return Collector.of(
+                () -> new TopN<T>(n),
+                (top, value) ->
+                {
+                    double keyValue = key.applyAsDouble(value);
+                    if (top.accepts(keyValue))
+                    {
+                        top.add(keyValue, projection.apply(value));
+                    }
+                },
+                TopN::merge,
+                Collector.Characteristics.IDENTITY_FINISH,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Check whether a value with this key would be added
+     * @param key the key
+     * @return true if the value would be added
+     */
+    public boolean accepts(double key)
+    {
+        return heap.size() < n || key > heap.peek().key;
+    }
+
+    /**
+     * Add a value, if the key is in the top N
+     * @param key the key
+     * @param value the value
+     */
+    public void add(double key, T value)
+    {
+        if (heap.size() < n)
+        {
+            heap.add(new Entry<>(key, value));
+        }
+        else if (key > heap.peek().key)
+        {
+            heap.poll();
+            heap.add(new Entry<>(key, value));
+        }
+    }
+
+    /**
+     * Add the values from another TopN to this TopN
+     * @param other the other TopN
+     * @return this TopN
+     */
+    public TopN<T> merge(TopN<T> other)
+    {
+        for (Entry<T> entry : other.heap)
+        {
+            add(entry.key, entry.value);
+        }
+        return this;
+    }
+
+    public int size()
+    {
+        return heap.size();
+    }
+
+    /**
+     * Get the values, highest key first
+     * @return a list of the values
+     */
+    public List<T> toList()
+    {
+        List<Entry<T>> entries = new ArrayList<>(heap);
+        entries.sort(Comparator.comparingDouble((Entry<T> entry) -> entry.key).reversed());
+        List<T> result = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries)
+        {
+            result.add(entry.value);
+        }
+        return result;
+    }
+
+    private static class Entry<T>
+    {
+        Entry(double key, T value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+
+        final double key;
+        final T value;
+    }
+}
@@ -0,0 +1,64 @@
+package com.smfreports.dedup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.blackhillsoftware.smf.SmfRecord;
+import com.blackhillsoftware.smf.SmfRecordReader;
+
+/**
+ *
+ * Count SMF records by type and subtype with duplicate records
+ * removed, using a DuplicateFilter to skip duplicates as the
+ * records are read.
+ *
+ */
+public class DeDupRecordCount
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.out.println("Usage: DeDupRecordCount <input-name> [<input-name> ...]");
+            System.out.println("<input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");
+            return;
+        }
+
+        // Keys are SMF record type and subtype
+        Map<Integer, Map<Integer, long[]>> counts = new TreeMap<>();
+
+        // One filter for all the input files so we find duplicates
+        // across files
+        DuplicateFilter dedup = new DuplicateFilter();
+
+        for (String inputName : args)
+        {
+            try (SmfRecordReader reader = SmfRecordReader.fromName(inputName))
+            {
+                for (SmfRecord record : dedup.filter(reader))
+                {
+                    int subtype = record.hasSubtypes() ? record.subType() : 0;
+                    long[] entry = counts.computeIfAbsent(record.recordType(), key -> new TreeMap<>())
+                        .computeIfAbsent(subtype, key -> new long[2]);
+                    entry[0]++;
+                    entry[1] += record.recordLength();
+                }
+            }
+        }
+
+        System.out.format("%5s %8s %11s %11s%n", "Type", "Subtype", "Records", "MB");
+        counts.forEach((type, subtypes) ->
+            subtypes.forEach((subtype, entry) ->
+                System.out.format("%5d %8d %11d %11d%n",
+                    type, subtype, entry[0], entry[1] / (1024 * 1024))));
+
+        System.out.format("%n%d records read, %d duplicates removed.%n",
+                dedup.getRecordCount(), dedup.getDuplicateCount());
+        if (dedup.getLateCount() > 0)
+        {
+            System.out.format("%d records were older than the duplicate check window.%n",
+                    dedup.getLateCount());
+        }
+    }
+}
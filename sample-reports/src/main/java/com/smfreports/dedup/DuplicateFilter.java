@@ -0,0 +1,297 @@
+package com.smfreports.dedup;
+
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import com.blackhillsoftware.smf.SmfRecord;
+
+/**
+ * Remove duplicate SMF records while they are being read, so reports
+ * can ignore duplicated data without writing a deduplicated copy of
+ * the input first.
+ * <p>
+ * A DuplicateFilter can be used as a Predicate on a stream:
+ * <pre>
+ * DuplicateFilter dedup = new DuplicateFilter();
+ * reader.stream()
+ *     .filter(dedup)
+ *     ...
+ * </pre>
+ * or to wrap the records in a for loop:
+ * <pre>
+ * for (SmfRecord record : dedup.filter(reader))
+ * </pre>
+ * Records are identified by a 128 bit MurmurHash3 hash of the record
+ * data. Identical records have the same system and SMF time, so hashes
+ * are kept by system and minute, and only for a window of minutes
+ * before the latest time seen for each system. Memory use depends on
+ * the window rather than the amount of input, if the input is roughly
+ * in time order for each system. A record from before the window is
+ * counted as late and passed through without being checked.
+ * <p>
+ * The same DuplicateFilter can be used for several inputs to remove
+ * duplicates across them. Records are checked under a lock so a filter
+ * can be used with a parallel stream, but which copy of a duplicated
+ * record is passed through is unpredictable in that case.
+ */
+public class DuplicateFilter implements Predicate<SmfRecord>
+{
+    /**
+     * The default window, in minutes
+     */
+    public static final int DEFAULT_WINDOW_MINUTES = 60;
+
+    private final int windowMinutes;
+    private final Murmur3Hasher hasher = new Murmur3Hasher();
+    private final long[] hash = new long[2];
+    private final Map<String, SystemWindow> windows = new HashMap<>();
+
+    private long recordCount = 0;
+    private long duplicateCount = 0;
+    private long lateCount = 0;
+
+    /**
+     * Create a DuplicateFilter with the default window.
+     */
+    public DuplicateFilter()
+    {
+        this(DEFAULT_WINDOW_MINUTES);
+    }
+
+    /**
+     * Create a DuplicateFilter
+     * @param windowMinutes the number of minutes before the latest SMF time
+     * for a system that records are checked for duplicates
+     */
+    public DuplicateFilter(int windowMinutes)
+    {
+        if (windowMinutes < 0)
+        {
+            throw new IllegalArgumentException("Window must not be negative: " + windowMinutes);
+        }
+        this.windowMinutes = windowMinutes;
+    }
+
+    /**
+     * Check a record.
+     * @param record the SMF record
+     * @return true if the record is not a duplicate of a record
+     * seen previously, false if it is a duplicate
+     */
+    @Override
+    public synchronized boolean test(SmfRecord record)
+    {
+        recordCount++;
+        hasher.hash(record.getBytes(), hash, 0);
+        HashBucket bucket = windows
+                .computeIfAbsent(record.system(), key -> new SystemWindow())
+                .bucketFor(Math.floorDiv(record.smfDateTime().toEpochSecond(ZoneOffset.UTC), 60));
+        // records older than the window are passed through
+        boolean added = bucket == null || bucket.add(hash[0], hash[1]);
+        if (!added)
+        {
+            duplicateCount++;
+        }
+        return added;
+    }
+
+    /**
+     * Remove duplicates from a stream of records
+     * @param records the records
+     * @return a stream without duplicate records
+     */
+    public Stream<SmfRecord> filter(Stream<SmfRecord> records)
+    {
+        return records.filter(this);
+    }
+
+    /**
+     * Remove duplicates from records e.g. from a SmfRecordReader
+     * @param records the records
+     * @return an Iterable that returns the records without duplicates
+     */
+    public Iterable<SmfRecord> filter(Iterable<SmfRecord> records)
+    {
+        return () -> new FilterIterator(records.iterator());
+    }
+
+    /**
+     * The number of records checked
+     * @return the record count
+     */
+    public synchronized long getRecordCount()
+    {
+        return recordCount;
+    }
+
+    /**
+     * The number of duplicate records removed
+     * @return the duplicate count
+     */
+    public synchronized long getDuplicateCount()
+    {
+        return duplicateCount;
+    }
+
+    /**
+     * The number of records that were older than the window when they
+     * were checked. These records are passed through without checking 
+     * for duplicates.
+     * @return the late record count
+     */
+    public synchronized long getLateCount()
+    {
+        return lateCount;
+    }
+
+    /**
+     * The number of hashes currently kept
+     * @return the hash count
+     */
+    public synchronized long getHashCount()
+    {
+        long count = 0;
+        for (SystemWindow window : windows.values())
+        {
+            for (HashBucket bucket : window.buckets.values())
+            {
+                count += bucket.size;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The record hashes for one system, by SMF minute.
+     */
+    private class SystemWindow
+    {
+        private final TreeMap<Long, HashBucket> buckets = new TreeMap<>();
+        private long highWaterMinute = Long.MIN_VALUE;
+
+        HashBucket bucketFor(long minute)
+        {
+            if (minute > highWaterMinute)
+            {
+                highWaterMinute = minute;
+                // discard buckets that have dropped out of the window
+                buckets.headMap(highWaterMinute - windowMinutes).clear();
+            }
+            else if (minute < highWaterMinute - windowMinutes)
+            {
+                // The bucket for this minute has been discarded. Don't 
+                // create it again, or late data could use unlimited memory.
+                lateCount++;
+                return null;
+            }
+            return buckets.computeIfAbsent(minute, key -> new HashBucket());
+        }
+    }
+
+    /**
+     * A set of 128 bit hashes in an open addressing table.
+     * A hash of 0 marks an empty slot so it is kept separately.
+     */
+    private static class HashBucket
+    {
+        private long[] table = new long[2 * 256];
+        private int size = 0;
+        private boolean containsZero = false;
+
+        boolean add(long high, long low)
+        {
+            if (high == 0 && low == 0)
+            {
+                boolean added = !containsZero;
+                containsZero = true;
+                return added;
+            }
+            int slot = find(table, high, low);
+            if (table[slot] != 0 || table[slot + 1] != 0)
+            {
+                return false;
+            }
+            table[slot] = high;
+            table[slot + 1] = low;
+            // keep the load factor below 0.5
+            if (++size * 4 > table.length)
+            {
+                resize();
+            }
+            return true;
+        }
+
+        /**
+         * Find the slot containing the hash, or the empty slot
+         * where it should be added.
+         */
+        private static int find(long[] table, long high, long low)
+        {
+            int mask = table.length / 2 - 1;
+            int slot = (int)(high ^ (high >>> 32)) & mask;
+            while ((table[slot * 2] != 0 || table[slot * 2 + 1] != 0)
+                    && (table[slot * 2] != high || table[slot * 2 + 1] != low))
+            {
+                slot = (slot + 1) & mask;
+            }
+            return slot * 2;
+        }
+
+        private void resize()
+        {
+            long[] newTable = new long[table.length * 2];
+            for (int i = 0; i < table.length; i += 2)
+            {
+                if (table[i] != 0 || table[i + 1] != 0)
+                {
+                    int slot = find(newTable, table[i], table[i + 1]);
+                    newTable[slot] = table[i];
+                    newTable[slot + 1] = table[i + 1];
+                }
+            }
+            table = newTable;
+        }
+    }
+
+    /**
+     * Iterator that skips duplicate records.
+     */
+    private class FilterIterator implements Iterator<SmfRecord>
+    {
+        private final Iterator<SmfRecord> source;
+        private SmfRecord next = null;
+
+        FilterIterator(Iterator<SmfRecord> source)
+        {
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (next == null && source.hasNext())
+            {
+                SmfRecord record = source.next();
+                if (test(record))
+                {
+                    next = record;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public SmfRecord next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            SmfRecord result = next;
+            next = null;
+            return result;
+        }
+    }
+}
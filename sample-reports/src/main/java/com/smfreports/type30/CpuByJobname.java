@@ -2,9 +2,11 @@ package com.smfreports.type30;
 
 import java.io.*;
 import java.time.*;
-import java.time.temporal.ChronoUnit;
+import java.time.temporal.ChronoField;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
+import java.util.zip.*;
 import com.blackhillsoftware.smf.*;
 import com.blackhillsoftware.smf.smf30.Smf30Record;
 
@@ -22,10 +24,21 @@ public class CpuByJobname
 	// Limit the number of jobs to display in the report.
 	private static final int TOP_LIMIT = 50;
 
+	// Number of jobs tracked for each period and system with -approximate.
+	private static final int APPROXIMATE_COUNTERS = 20 * TOP_LIMIT;
+
+	// Identifies a snapshot file and format version
+	private static final String SNAPSHOT_ID = "CpuByJobname snapshot 1";
+
 	private static void printUsage()
 	{
-	    System.out.println("Usage: CpuByJobname [-month|-day|-hour] <input-name> [<input-name> ...]");
+	    System.out.println("Usage: CpuByJobname [-month|-day|-hour] [-parallel] [-approximate] [-load snapshot ...] [-save snapshot] [<input-name> ...]");
 	    System.out.println("  Default: group by month.");
+	    System.out.println("  -parallel: process each input on a separate thread.");
+	    System.out.println("  -approximate: find the top jobs in fixed memory, with approximate values.");
+	    System.out.println("  -load: add the statistics from a snapshot saved by a previous run. Can be repeated.");
+	    System.out.println("  -save: save the statistics to a snapshot file, e.g. to add to the next run.");
+	    System.out.println("  Snapshots must have the same grouping. Don't load a snapshot and process the same input again.");
 	    System.out.println("  <input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");
 	}
 
@@ -75,12 +88,15 @@ public class CpuByJobname
         }
 
         Grouping grouping = Grouping.MONTH;
-        List<String> inputNames;
+        boolean parallel = false;
+        boolean approximate = false;
+        List<String> loadNames = new ArrayList<>();
+        String saveName = null;
 
-        String first = args[0];
-        if (first.startsWith("-"))
+        int first = 0;
+        while (first < args.length && args[first].startsWith("-"))
         {
-            switch (first)
+            switch (args[first])
             {
                 case "-month":
                     grouping = Grouping.MONTH;
@@ -91,74 +107,274 @@ public class CpuByJobname
                 case "-hour":
                     grouping = Grouping.HOUR;
                     break;
-                default:
-                    grouping = null;
+                case "-parallel":
+                    parallel = true;
                     break;
+                case "-approximate":
+                    approximate = true;
+                    break;
+                case "-load":
+                case "-save":
+                    if (first + 1 >= args.length)
+                    {
+                        printUsage();
+                        return;
+                    }
+                    if (args[first].equals("-load"))
+                    {
+                        loadNames.add(args[++first]);
+                    }
+                    else
+                    {
+                        saveName = args[++first];
+                    }
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[first]);
+                    printUsage();
+                    return;
             }
-            if (grouping == null)
-            {
-                System.err.println("Unknown grouping option: " + first);
-                printUsage();
-                return;
-            }
-            if (args.length < 2)
-            {
-                printUsage();
-                return;
-            }
-            inputNames = Arrays.asList(args).subList(1, args.length);
+            first++;
         }
-        else
+        List<String> inputNames = Arrays.asList(args).subList(first, args.length);
+
+        if (inputNames.isEmpty() && loadNames.isEmpty())
         {
-            inputNames = Arrays.asList(args);
+            printUsage();
+            return;
         }
-
-        if (inputNames.isEmpty())
+        if (approximate && (saveName != null || !loadNames.isEmpty()))
         {
+            System.err.println("-load and -save can't be used with -approximate");
             printUsage();
             return;
         }
 
-        // Create Map and process input files
-        Map<LocalDateTime, Map<String, Map<String, CpuStats>>> stats = new HashMap<>();
+        // Create report and process input files
+        Report report;
+        if (parallel)
+        {
+            report = processParallel(inputNames, grouping, approximate);
+        }
+        else
+        {
+            report = new Report(grouping, approximate);
+            for (String name : inputNames)
+            {
+                processFile(name, report);
+            }
+        }
 
-        for (String name : inputNames)
+        // add statistics from previous runs
+        for (String name : loadNames)
+        {
+            report.load(name);
+        }
+        if (saveName != null)
         {
-            try (SmfRecordReader reader = SmfRecordReader.fromName(name)
+            report.save(saveName);
+        }
+
+        report.write();
+    }
+
+    /**
+     * Collect information from each file
+     * @param name the input name
+     * @param report the Report to update
+     * @throws IOException if the input can't be read
+     */
+    private static void processFile(String name, Report report) throws IOException
+    {
+        try (SmfRecordReader reader = SmfRecordReader.fromName(name)
     				.include(30, 2)
     				.include(30, 3)
     				.include(30, 5))
+        {
+            for (SmfRecord record : reader)
             {
-                processFile(reader, stats, grouping);
+                report.add(Smf30Record.from(record));
             }
         }
-
-        writeReport(stats, grouping);
     }
 
     /**
-     * Collect information from each file
-     * @param reader SmfRecordReader configured to only return SMF70 subtype 1
-     * @param stats Map of statistics to update
+     * Process each input on a separate thread into its own Report,
+     * then merge the reports.
+     * @param inputNames the input names
      * @param grouping Grouping value (MONTH, DAY, HOUR)
+     * @param approximate collect approximate top jobs
+     * @return the merged Report
+     * @throws IOException if an input can't be read
      */
-    private static void processFile(SmfRecordReader reader,
-            Map<LocalDateTime, Map<String, Map<String, CpuStats>>> stats, 
-            Grouping grouping)
+    private static Report processParallel(List<String> inputNames, Grouping grouping, boolean approximate) throws IOException
+    {
+        int threads = Math.max(1, Math.min(inputNames.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Report>> results = new ArrayList<>();
+            for (String name : inputNames)
+            {
+                results.add(executor.submit(() -> 
+                {
+                    Report fileReport = new Report(grouping, approximate);
+                    processFile(name, fileReport);
+                    return fileReport;
+                }));
+            }
+
+            // merge in input order as each file completes
+            Report report = new Report(grouping, approximate);
+            for (Future<Report> result : results)
+            {
+                report.merge(result.get());
+            }
+            return report;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted processing input");
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+	/**
+	 * CP and zIIP time and MSUs by period, system and jobname from
+	 * interval and job end records, or only the approximate top jobs
+	 * for each period and system.
+	 */
+	static class Report
 	{
-	    for (SmfRecord record : reader)
+		// SMF 30 subtypes used by the report
+		static final Set<Integer> SUBTYPES = Set.of(2, 3, 5);
+
+	    private final CpuCube stats = new CpuCube();
+	    // bucket -> system -> approximate top jobs, or null
+	    private final Map<Integer, Map<String, TopCpu>> approximateStats;
+	    private final Grouping grouping;
+	    // reused for each record
+	    private final CpuStats recordStats = new CpuStats();
+
+	    Report(Grouping grouping)
+	    {
+	    	this(grouping, false);
+	    }
+
+	    /**
+	     * Create a Report
+	     * @param grouping Grouping value (MONTH, DAY, HOUR)
+	     * @param approximate track only the approximate top jobs
+	     * for each period and system
+	     */
+	    Report(Grouping grouping, boolean approximate)
+	    {
+	    	this.grouping = grouping;
+	    	approximateStats = approximate ? new HashMap<>() : null;
+	    }
+
+	    void add(Smf30Record r30)
 	    {
-	        Smf30Record r30 = Smf30Record.from(record);
-	    	
 	    	if (includeRecord(r30))
 	    	{
-				LocalDateTime periodStart = grouping.bucketStart(r30.smfDateTime());
-        		CpuStats cpuStats = stats
-        				.computeIfAbsent(periodStart, ps -> new HashMap<>())
-        				.computeIfAbsent(r30.system(), ps -> new HashMap<>())
-                        .computeIfAbsent(r30.identificationSection().smf30jbn(), p -> new CpuStats());
-        		
-	    		cpuStats.add(r30);
+	    		recordStats.clear();
+	    		recordStats.add(r30);
+	    		if (approximateStats != null)
+	    		{
+	    			approximateStats
+	    				.computeIfAbsent(grouping.bucket(r30.smfDateTime()), bucket -> new HashMap<>())
+	    				.computeIfAbsent(r30.system(), system -> new TopCpu())
+	    				.add(r30.identificationSection().smf30jbn(), recordStats);
+	    		}
+	    		else
+	    		{
+	    			stats.add(grouping.bucket(r30.smfDateTime()),
+	    					r30.system(),
+	    					r30.identificationSection().smf30jbn(),
+	    					recordStats);
+	    		}
+	    	}
+	    }
+
+	    /**
+	     * Add the statistics from another Report, e.g. for another input
+	     * processed on a different thread.
+	     */
+	    void merge(Report other)
+	    {
+	    	stats.merge(other.stats);
+	    	if (approximateStats != null)
+	    	{
+	    		other.approximateStats.forEach((bucket, systems) ->
+	    			systems.forEach((system, topCpu) ->
+	    				approximateStats.computeIfAbsent(bucket, b -> new HashMap<>())
+	    					.computeIfAbsent(system, s -> new TopCpu())
+	    					.merge(topCpu)));
+	    	}
+	    }
+
+	    /**
+	     * Add the statistics from a snapshot file written by save()
+	     * @param name the file name
+	     * @throws IOException if the file can't be read or has a different grouping
+	     */
+	    void load(String name) throws IOException
+	    {
+	    	try (DataInputStream in = new DataInputStream(
+	    			new BufferedInputStream(new GZIPInputStream(new FileInputStream(name)))))
+	    	{
+	    		if (!in.readUTF().equals(SNAPSHOT_ID))
+	    		{
+	    			throw new IOException("Not a CpuByJobname snapshot: " + name);
+	    		}
+	    		String snapshotGrouping = in.readUTF();
+	    		if (!snapshotGrouping.equals(grouping.name()))
+	    		{
+	    			throw new IOException("Snapshot " + name + " grouping is " + snapshotGrouping 
+	    					+ ", expected " + grouping.name());
+	    		}
+	    		stats.read(in);
+	    	}
+	    }
+
+	    /**
+	     * Save the statistics to a snapshot file, so they can be added to
+	     * a later run using load().
+	     * @param name the file name
+	     * @throws IOException if the file can't be written
+	     */
+	    void save(String name) throws IOException
+	    {
+	    	try (DataOutputStream out = new DataOutputStream(
+	    			new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(name)))))
+	    	{
+	    		out.writeUTF(SNAPSHOT_ID);
+	    		out.writeUTF(grouping.name());
+	    		stats.write(out);
+	    	}
+	    }
+
+	    void write()
+	    {
+	    	if (approximateStats != null)
+	    	{
+	    		Map<LocalDateTime, Map<String, TopCpu>> byTime = new HashMap<>();
+	    		approximateStats.forEach((bucket, systems) -> byTime.put(grouping.bucketStart(bucket), systems));
+	    		writeApproximateReport(byTime, grouping);
+	    	}
+	    	else
+	    	{
+	    		writeReport(stats, grouping);
 	    	}
 	    }
 	}
@@ -179,11 +395,10 @@ public class CpuByJobname
 
     /**
      * Write the report
-     * @param stats Map of collected statistics
+     * @param stats collected statistics
      * @param grouping Grouping value (MONTH, DAY, HOUR)
      */
-	private static void writeReport(Map<LocalDateTime, Map<String, Map<String, CpuStats>>> stats,
-			Grouping grouping)
+	private static void writeReport(CpuCube stats, Grouping grouping)
 	{
 		// write heading
         System.out.format("%-19s %-12s %-12s %14s %14s %14s %14s%n", 
@@ -195,12 +410,9 @@ public class CpuByJobname
                 "zIIP Time", 
                 "zIIP MSU");
 
-	    stats.entrySet().stream()
-	            .sorted(Map.Entry.comparingByKey()) // sort by time
-	            .forEachOrdered(timeEntry ->
+	    stats.forEachPeriod((bucket, systems) -> // in time order
 	    {
-	        LocalDateTime time = timeEntry.getKey();
-	        var systems = timeEntry.getValue();
+	        LocalDateTime time = grouping.bucketStart(bucket);
 	
 			System.out.println();
 			systems.entrySet().stream()
@@ -258,8 +470,450 @@ public class CpuByJobname
 	    });
 	}
 
+    /**
+     * Write the report from the approximate statistics
+     * @param stats Map of collected statistics
+     * @param grouping Grouping value (MONTH, DAY, HOUR)
+     */
+	private static void writeApproximateReport(Map<LocalDateTime, Map<String, TopCpu>> stats,
+			Grouping grouping)
+	{
+		// write heading
+        System.out.format("%-19s %-12s %-12s %14s %14s %14s %14s %14s%n", 
+        		"Time", 
+        		"System", 
+        		"Jobname", 
+        		"CP Time", 
+        		"CP MSU",
+                "zIIP Time", 
+                "zIIP MSU",
+                "Max Error");
+
+        new TreeMap<>(stats).forEach((time, systems) -> // sort by time
+        {
+			System.out.println();
+			CpuStats periodTotal = new CpuStats();
+			new TreeMap<>(systems).forEach((system, topCpu) -> // sort by system
+			{
+				List<TopCpu.Counter> counters = topCpu.top();
+				CpuStats shown = new CpuStats();
+            	for (TopCpu.Counter counter : counters.subList(0, Math.min(TOP_LIMIT, counters.size())))
+            	{
+            		CpuStats cs = counter.stats;
+                    System.out.format("%-19s %-12s %-12s %14s %14.2f %14s %14.2f %14s%n", 
+                    		grouping.periodHeading(time),
+                    		system,
+                    		counter.name, 
+		                    formatSeconds(cs.cpSeconds),
+		                    cs.cpMsu,
+		                    formatSeconds(cs.ziipSeconds),
+		                    cs.ziipMsu,
+		                    formatSeconds(counter.error));
+                    shown.add(cs);
+            	}
+            	
+            	if (counters.size() > TOP_LIMIT || topCpu.lowest() > 0)
+            	{
+            		// everything not shown above, from the exact totals
+            		CpuStats other = new CpuStats();
+            		other.cpSeconds = topCpu.total.cpSeconds - shown.cpSeconds;
+            		other.cpMsu = topCpu.total.cpMsu - shown.cpMsu;
+            		other.ziipSeconds = topCpu.total.ziipSeconds - shown.ziipSeconds;
+            		other.ziipMsu = topCpu.total.ziipMsu - shown.ziipMsu;
+                    System.out.format("%-19s %-12s %-12s %14s %14.2f %14s %14.2f%n", 
+                    		grouping.periodHeading(time),
+                    		system,
+                    		"OTHER", 
+		                    formatSeconds(other.cpSeconds),
+		                    other.cpMsu,
+		                    formatSeconds(other.ziipSeconds),
+		                    other.ziipMsu);
+            	}
+            	System.out.println();
+            	periodTotal.add(topCpu.total);
+			});
+	        System.out.format("%n%-19s %-12s %-12s %14s %14.2f %14s %14.2f%n",
+	        		grouping.periodHeading(time),
+	        		"",
+	        		"Total",
+	        		formatSeconds(periodTotal.cpSeconds),
+	        		periodTotal.cpMsu,
+	        		formatSeconds(periodTotal.ziipSeconds),
+	        		periodTotal.ziipMsu);
+        });
+        
+        System.out.format("%nApproximate values: up to %d jobs are tracked for each period and system.%n"
+        		+ "CPU values for a job can be lower than the real value by up to Max Error.%n", 
+        		APPROXIMATE_COUNTERS);
+	}
+
+	/**
+	 * CPU statistics by time bucket, system and jobname.
+	 * 
+	 * System and jobname are stored as int ids, and the values for each
+	 * combination of bucket, system and jobname (a cell) are stored in 
+	 * arrays indexed by cell number. Cells are found using an open 
+	 * addressing hash table of cell numbers, so there are no objects per 
+	 * cell and memory use is about 60 bytes per cell.
+	 */
+	private static class CpuCube
+	{
+		private final Map<String, Integer> systemIds = new HashMap<>();
+		private final List<String> systems = new ArrayList<>();
+		private final Map<String, Integer> jobnameIds = new HashMap<>();
+		private final List<String> jobnames = new ArrayList<>();
+
+		// cell number + 1 for each hash slot, 0 = empty
+		private int[] slots = new int[1024];
+
+		private int cells = 0;
+		private int[] cellBucket = new int[512];
+		private int[] cellSystem = new int[512];
+		private int[] cellJobname = new int[512];
+		private double[] cpSeconds = new double[512];
+		private double[] cpMsu = new double[512];
+		private double[] ziipSeconds = new double[512];
+		private double[] ziipMsu = new double[512];
+
+		void add(int bucket, String system, String jobname, CpuStats stats)
+		{
+			int cell = cell(bucket, 
+					systemIds.computeIfAbsent(system, key -> { systems.add(key); return systems.size() - 1; }),
+					jobnameIds.computeIfAbsent(jobname, key -> { jobnames.add(key); return jobnames.size() - 1; }));
+			cpSeconds[cell] += stats.cpSeconds;
+			cpMsu[cell] += stats.cpMsu;
+			ziipSeconds[cell] += stats.ziipSeconds;
+			ziipMsu[cell] += stats.ziipMsu;
+		}
+
+		/**
+		 * Find or create the cell for a bucket, system and jobname
+		 */
+		private int cell(int bucket, int system, int jobname)
+		{
+			int mask = slots.length - 1;
+			int slot = hash(bucket, system, jobname) & mask;
+			while (slots[slot] != 0)
+			{
+				int cell = slots[slot] - 1;
+				if (cellBucket[cell] == bucket && cellSystem[cell] == system && cellJobname[cell] == jobname)
+				{
+					return cell;
+				}
+				slot = (slot + 1) & mask;
+			}
+
+			int cell = cells++;
+			if (cell == cellBucket.length)
+			{
+				int size = cellBucket.length * 2;
+				cellBucket = Arrays.copyOf(cellBucket, size);
+				cellSystem = Arrays.copyOf(cellSystem, size);
+				cellJobname = Arrays.copyOf(cellJobname, size);
+				cpSeconds = Arrays.copyOf(cpSeconds, size);
+				cpMsu = Arrays.copyOf(cpMsu, size);
+				ziipSeconds = Arrays.copyOf(ziipSeconds, size);
+				ziipMsu = Arrays.copyOf(ziipMsu, size);
+			}
+			cellBucket[cell] = bucket;
+			cellSystem[cell] = system;
+			cellJobname[cell] = jobname;
+			slots[slot] = cell + 1;
+
+			// keep the hash table at most half full
+			if (cells * 2 > slots.length)
+			{
+				rehash();
+			}
+			return cell;
+		}
+
+		private void rehash()
+		{
+			slots = new int[slots.length * 2];
+			int mask = slots.length - 1;
+			for (int cell = 0; cell < cells; cell++)
+			{
+				int slot = hash(cellBucket[cell], cellSystem[cell], cellJobname[cell]) & mask;
+				while (slots[slot] != 0)
+				{
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = cell + 1;
+			}
+		}
+
+		private static int hash(int bucket, int system, int jobname)
+		{
+			int h = bucket * 0x9E3779B1 + system * 0x85EBCA77 + jobname * 0xC2B2AE3D;
+			return h ^ (h >>> 16);
+		}
+
+		/**
+		 * Add the statistics from another CpuCube
+		 */
+		void merge(CpuCube other)
+		{
+			for (int cell = 0; cell < other.cells; cell++)
+			{
+				add(other.cellBucket[cell], 
+						other.systems.get(other.cellSystem[cell]),
+						other.jobnames.get(other.cellJobname[cell]),
+						other.get(cell));
+			}
+		}
+
+		/**
+		 * Write the names and cells. Names are written once and cells 
+		 * refer to them by id.
+		 */
+		void write(DataOutputStream out) throws IOException
+		{
+			writeNames(out, systems);
+			writeNames(out, jobnames);
+			out.writeInt(cells);
+			for (int cell = 0; cell < cells; cell++)
+			{
+				out.writeInt(cellBucket[cell]);
+				out.writeInt(cellSystem[cell]);
+				out.writeInt(cellJobname[cell]);
+				out.writeDouble(cpSeconds[cell]);
+				out.writeDouble(cpMsu[cell]);
+				out.writeDouble(ziipSeconds[cell]);
+				out.writeDouble(ziipMsu[cell]);
+			}
+		}
+
+		/**
+		 * Read names and cells written by write() and add them to this CpuCube
+		 */
+		void read(DataInputStream in) throws IOException
+		{
+			List<String> snapshotSystems = readNames(in);
+			List<String> snapshotJobnames = readNames(in);
+			int snapshotCells = in.readInt();
+			CpuStats cellStats = new CpuStats();
+			for (int i = 0; i < snapshotCells; i++)
+			{
+				int bucket = in.readInt();
+				String system = snapshotSystems.get(in.readInt());
+				String jobname = snapshotJobnames.get(in.readInt());
+				cellStats.cpSeconds = in.readDouble();
+				cellStats.cpMsu = in.readDouble();
+				cellStats.ziipSeconds = in.readDouble();
+				cellStats.ziipMsu = in.readDouble();
+				add(bucket, system, jobname, cellStats);
+			}
+		}
+
+		private static void writeNames(DataOutputStream out, List<String> names) throws IOException
+		{
+			out.writeInt(names.size());
+			for (String name : names)
+			{
+				out.writeUTF(name);
+			}
+		}
+
+		private static List<String> readNames(DataInputStream in) throws IOException
+		{
+			int count = in.readInt();
+			List<String> names = new ArrayList<>(count);
+			for (int i = 0; i < count; i++)
+			{
+				names.add(in.readUTF());
+			}
+			return names;
+		}
+
+		private CpuStats get(int cell)
+		{
+			CpuStats cpuStats = new CpuStats();
+			cpuStats.cpSeconds = cpSeconds[cell];
+			cpuStats.cpMsu = cpMsu[cell];
+			cpuStats.ziipSeconds = ziipSeconds[cell];
+			cpuStats.ziipMsu = ziipMsu[cell];
+			return cpuStats;
+		}
+
+		/**
+		 * Pass the statistics for each time bucket, as a map of
+		 * system -> jobname -> CpuStats, to the action in bucket order.
+		 * Only one bucket is expanded to objects at a time.
+		 */
+		void forEachPeriod(java.util.function.BiConsumer<Integer, Map<String, Map<String, CpuStats>>> action)
+		{
+			// sort cells by bucket, keeping the cell number in the low 32 bits
+			long[] order = new long[cells];
+			for (int cell = 0; cell < cells; cell++)
+			{
+				order[cell] = (long) cellBucket[cell] << 32 | cell;
+			}
+			Arrays.sort(order);
+
+			int i = 0;
+			while (i < cells)
+			{
+				int bucket = (int) (order[i] >> 32);
+				Map<String, Map<String, CpuStats>> period = new HashMap<>();
+				for (; i < cells && (int) (order[i] >> 32) == bucket; i++)
+				{
+					int cell = (int) order[i];
+					period.computeIfAbsent(systems.get(cellSystem[cell]), x -> new HashMap<>())
+						.put(jobnames.get(cellJobname[cell]), get(cell));
+				}
+				action.accept(bucket, period);
+			}
+		}
+	}
+
+	/**
+	 * Approximate top names by CPU time in fixed memory, using the 
+	 * Space-Saving algorithm.
+	 * 
+	 * Up to APPROXIMATE_COUNTERS names are tracked. When a new name is seen
+	 * and all the counters are in use, the counter with the lowest CPU time
+	 * is reassigned to the new name, and the new name starts with that CPU 
+	 * time as its possible error. The real CPU time for a tracked name is
+	 * between cpuTime - error and cpuTime. The error is at most total CPU 
+	 * time / number of counters, and any name that used more than that is
+	 * always tracked.
+	 * 
+	 * The statistics for a name are the values added since it was last 
+	 * assigned a counter, i.e. a lower bound. Totals are exact.
+	 */
+	private static class TopCpu
+	{
+		private final Map<String, Counter> counters = new HashMap<>();
+		private final TreeSet<Counter> byCpu = new TreeSet<>(
+				Comparator.comparingDouble((Counter counter) -> counter.cpuTime)
+					.thenComparing(counter -> counter.name));
+		// exact totals for all names
+		private final CpuStats total = new CpuStats();
+
+		void add(String name, CpuStats stats)
+		{
+			total.add(stats);
+			double cpuTime = stats.totalCpuTime();
+			Counter counter = counters.get(name);
+			if (counter == null)
+			{
+				if (counters.size() < APPROXIMATE_COUNTERS)
+				{
+					counter = new Counter(name, 0);
+				}
+				else if (cpuTime > 0)
+				{
+					// replace the name with the lowest CPU time 
+					Counter lowest = byCpu.pollFirst();
+					counters.remove(lowest.name);
+					counter = new Counter(name, lowest.cpuTime);
+				}
+				else
+				{
+					return; // no CPU time so it can't replace another name
+				}
+				counters.put(name, counter);
+			}
+			else
+			{
+				// remove and add again to update the sort order
+				byCpu.remove(counter);
+			}
+			counter.cpuTime += cpuTime;
+			counter.stats.add(stats);
+			byCpu.add(counter);
+		}
+
+		/**
+		 * Add the counters from another TopCpu. A name that is not tracked 
+		 * by one of them could have up to its lowest CPU time, which is 
+		 * added to the CPU time and error.
+		 */
+		void merge(TopCpu other)
+		{
+			double lowest = lowest();
+			double otherLowest = other.lowest();
+			Map<String, Counter> merged = new HashMap<>();
+			for (Counter counter : counters.values())
+			{
+				Counter otherCounter = other.counters.get(counter.name);
+				merged.put(counter.name, otherCounter != null
+						? counter.merge(otherCounter)
+						: counter.merge(new Counter(counter.name, otherLowest)));
+			}
+			for (Counter otherCounter : other.counters.values())
+			{
+				if (!counters.containsKey(otherCounter.name))
+				{
+					merged.put(otherCounter.name, new Counter(otherCounter.name, lowest).merge(otherCounter));
+				}
+			}
+			
+			counters.clear();
+			byCpu.clear();
+			byCpu.addAll(merged.values());
+			while (byCpu.size() > APPROXIMATE_COUNTERS)
+			{
+				byCpu.pollFirst();
+			}
+			for (Counter counter : byCpu)
+			{
+				counters.put(counter.name, counter);
+			}
+			total.add(other.total);
+		}
+
+		/**
+		 * The most CPU time a name that is not tracked could have used
+		 */
+		double lowest()
+		{
+			return counters.size() < APPROXIMATE_COUNTERS ? 0 : byCpu.first().cpuTime;
+		}
+
+		/**
+		 * The tracked names, highest CPU time first
+		 */
+		List<Counter> top()
+		{
+			return new ArrayList<>(byCpu.descendingSet());
+		}
+
+		private static class Counter
+		{
+			Counter(String name, double error)
+			{
+				this.name = name;
+				this.cpuTime = error;
+				this.error = error;
+			}
+
+			Counter merge(Counter other)
+			{
+				cpuTime += other.cpuTime;
+				error += other.error;
+				stats.add(other.stats);
+				return this;
+			}
+
+			final String name;
+			double cpuTime;
+			double error;
+			final CpuStats stats = new CpuStats();
+		}
+	}
+
 	private static class CpuStats
 	{
+		void clear()
+		{
+			cpSeconds = 0;
+			cpMsu = 0;
+			ziipSeconds = 0;
+			ziipMsu = 0;
+		}
+
 		double totalCpuTime()
 		{
 			return cpSeconds + ziipSeconds;
@@ -272,10 +926,7 @@ public class CpuByJobname
 	    	{
 	    		for (CpuStats s : byClass.values())
 	    		{
-	    			t.cpSeconds += s.cpSeconds;
-	    			t.cpMsu += s.cpMsu;
-	    			t.ziipSeconds += s.ziipSeconds;
-	    			t.ziipMsu += s.ziipMsu;
+	    			t.add(s);
 	    		}
 	    	}
 	    	return t;
@@ -286,14 +937,26 @@ public class CpuByJobname
 	    	CpuStats t = new CpuStats();
 	    	for (CpuStats s : parts)
 	    	{
-	    		t.cpSeconds += s.cpSeconds;
-	    		t.cpMsu += s.cpMsu;
-	    		t.ziipSeconds += s.ziipSeconds;
-	    		t.ziipMsu += s.ziipMsu;
+	    		t.add(s);
 	    	}
 	    	return t;
 	    }
 
+	    /**
+	     * Add the values from another CpuStats, e.g. to merge 
+	     * statistics collected on different threads.
+	     * @param other the other CpuStats
+	     * @return this CpuStats
+	     */
+	    CpuStats add(CpuStats other)
+	    {
+	    	cpSeconds += other.cpSeconds;
+	    	cpMsu += other.cpMsu;
+	    	ziipSeconds += other.ziipSeconds;
+	    	ziipMsu += other.ziipMsu;
+	    	return this;
+	    }
+
 	    public void add(Smf30Record r30)
 	    {
 	    	var processorAccountingSection = r30.processorAccountingSection();
@@ -344,20 +1007,39 @@ public class CpuByJobname
 	 * Enum for grouping, calculates the bucket start time for a record time 
 	 * and formats headings appropriately.
 	 */
-	private enum Grouping
+	enum Grouping
 	{
 	    MONTH, DAY, HOUR;
 	
-	    LocalDateTime bucketStart(LocalDateTime smfDateTime)
+	    /**
+	     * Get the bucket number for a time: months, days or hours since 1970.
+	     * The bucket number is calculated without creating objects. 
+	     */
+	    int bucket(LocalDateTime smfDateTime)
+	    {
+	        switch (this)
+	        {
+	            case MONTH:
+	                return (smfDateTime.getYear() - 1970) * 12 + smfDateTime.getMonthValue() - 1;
+	            case DAY:
+	                return (int) smfDateTime.getLong(ChronoField.EPOCH_DAY);
+	            case HOUR:
+	                return (int) (smfDateTime.getLong(ChronoField.EPOCH_DAY) * 24 + smfDateTime.getHour());
+	            default:
+	                throw new IllegalStateException();
+	        }
+	    }
+
+	    LocalDateTime bucketStart(int bucket)
 	    {
 	        switch (this)
 	        {
 	            case MONTH:
-	                return LocalDateTime.of(YearMonth.from(smfDateTime).atDay(1), LocalTime.MIDNIGHT);
+	                return LocalDateTime.of(Math.floorDiv(bucket, 12) + 1970, Math.floorMod(bucket, 12) + 1, 1, 0, 0);
 	            case DAY:
-	                return smfDateTime.truncatedTo(ChronoUnit.DAYS);
+	                return LocalDate.ofEpochDay(bucket).atStartOfDay();
 	            case HOUR:
-	                return smfDateTime.truncatedTo(ChronoUnit.HOURS);
+	                return LocalDate.ofEpochDay(Math.floorDiv(bucket, 24)).atTime(Math.floorMod(bucket, 24), 0);
 	            default:
 	                throw new IllegalStateException();
 	        }
@@ -4,6 +4,7 @@ import java.io.*;
 import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 import com.blackhillsoftware.smf.*;
 import com.blackhillsoftware.smf.smf30.Smf30Record;
@@ -22,10 +23,15 @@ public class CpuByProgramName
 	// Limit the number of programs to display in the report.
 	private static final int TOP_LIMIT = 50;
 
+	// Number of programs tracked for each period and system with -approximate.
+	private static final int APPROXIMATE_COUNTERS = 20 * TOP_LIMIT;
+
 	private static void printUsage()
 	{
-	    System.out.println("Usage: CpuByProgramName [-month|-day|-hour] <input-name> [<input-name> ...]");
+	    System.out.println("Usage: CpuByProgramName [-month|-day|-hour] [-parallel] [-approximate] <input-name> [<input-name> ...]");
 	    System.out.println("  Default: group by month.");
+	    System.out.println("  -parallel: process each input on a separate thread.");
+	    System.out.println("  -approximate: find the top programs in fixed memory, with approximate values.");
 	    System.out.println("  <input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");
 	}
 
@@ -75,12 +81,13 @@ public class CpuByProgramName
         }
 
         Grouping grouping = Grouping.MONTH;
-        List<String> inputNames;
+        boolean parallel = false;
+        boolean approximate = false;
 
-        String first = args[0];
-        if (first.startsWith("-"))
+        int first = 0;
+        while (first < args.length && args[first].startsWith("-"))
         {
-            switch (first)
+            switch (args[first])
             {
                 case "-month":
                     grouping = Grouping.MONTH;
@@ -91,27 +98,20 @@ public class CpuByProgramName
                 case "-hour":
                     grouping = Grouping.HOUR;
                     break;
-                default:
-                    grouping = null;
+                case "-parallel":
+                    parallel = true;
                     break;
+                case "-approximate":
+                    approximate = true;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[first]);
+                    printUsage();
+                    return;
             }
-            if (grouping == null)
-            {
-                System.err.println("Unknown grouping option: " + first);
-                printUsage();
-                return;
-            }
-            if (args.length < 2)
-            {
-                printUsage();
-                return;
-            }
-            inputNames = Arrays.asList(args).subList(1, args.length);
-        }
-        else
-        {
-            inputNames = Arrays.asList(args);
+            first++;
         }
+        List<String> inputNames = Arrays.asList(args).subList(first, args.length);
 
         if (inputNames.isEmpty())
         {
@@ -119,51 +119,190 @@ public class CpuByProgramName
             return;
         }
 
-        // Create Map and process input files
-        Map<LocalDateTime, Map<String, Map<String, CpuStats>>> stats = new HashMap<>();
-
-        for (String name : inputNames)
+        // Create report and process input files
+        Report report;
+        if (parallel)
         {
-            try (SmfRecordReader reader = SmfRecordReader.fromName(name)
-    				.include(30, 2)
-    				.include(30, 3))
+            report = processParallel(inputNames, grouping, approximate);
+        }
+        else
+        {
+            report = new Report(grouping, approximate);
+            for (String name : inputNames)
             {
-                processFile(reader, stats, grouping);
+                processFile(name, report);
             }
         }
 
-        writeReport(stats, grouping);
+        report.write();
     }
 
     /**
      * Collect information from each file
-     * @param reader SmfRecordReader configured to only return SMF70 subtype 1
-     * @param stats Map of statistics to update
+     * @param name the input name
+     * @param report the Report to update
+     * @throws IOException if the input can't be read
+     */
+    private static void processFile(String name, Report report) throws IOException
+    {
+        try (SmfRecordReader reader = SmfRecordReader.fromName(name)
+    				.include(30, 2)
+    				.include(30, 3))
+        {
+            for (SmfRecord record : reader)
+            {
+                report.add(Smf30Record.from(record));
+            }
+        }
+    }
+
+    /**
+     * Process each input on a separate thread into its own Report,
+     * then merge the reports.
+     * @param inputNames the input names
      * @param grouping Grouping value (MONTH, DAY, HOUR)
+     * @param approximate collect approximate top programs
+     * @return the merged Report
+     * @throws IOException if an input can't be read
      */
-    private static void processFile(SmfRecordReader reader,
-            Map<LocalDateTime, Map<String, Map<String, CpuStats>>> stats, 
-            Grouping grouping)
+    private static Report processParallel(List<String> inputNames, Grouping grouping, boolean approximate) throws IOException
+    {
+        int threads = Math.max(1, Math.min(inputNames.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Report>> results = new ArrayList<>();
+            for (String name : inputNames)
+            {
+                results.add(executor.submit(() -> 
+                {
+                    Report fileReport = new Report(grouping, approximate);
+                    processFile(name, fileReport);
+                    return fileReport;
+                }));
+            }
+
+            // merge in input order as each file completes
+            Report report = new Report(grouping, approximate);
+            for (Future<Report> result : results)
+            {
+                report.merge(result.get());
+            }
+            return report;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted processing input");
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+	/**
+	 * CP and zIIP time by period, system and program name from interval
+	 * records, using the z/OS UNIX program name if there is one, or only
+	 * the approximate top programs for each period and system.
+	 */
+	static class Report
 	{
-	    for (SmfRecord record : reader)
+		// SMF 30 subtypes used by the report
+		static final Set<Integer> SUBTYPES = Set.of(2, 3);
+
+	    private final Map<LocalDateTime, Map<String, Map<String, CpuStats>>> stats = new HashMap<>();
+	    // period -> system -> approximate top programs, or null
+	    private final Map<LocalDateTime, Map<String, TopCpu>> approximateStats;
+	    private final Grouping grouping;
+
+	    Report(Grouping grouping)
+	    {
+	    	this(grouping, false);
+	    }
+
+	    /**
+	     * Create a Report
+	     * @param grouping Grouping value (MONTH, DAY, HOUR)
+	     * @param approximate track only the approximate top programs
+	     * for each period and system
+	     */
+	    Report(Grouping grouping, boolean approximate)
+	    {
+	    	this.grouping = grouping;
+	    	approximateStats = approximate ? new HashMap<>() : null;
+	    }
+
+	    void add(Smf30Record r30)
 	    {
-	        Smf30Record r30 = Smf30Record.from(record);
-	        
 	        // See if smf30exn has a value - it tells us the unix program name.
 	        // if not available, use the smf30pgm name.
 	        String program = r30.identificationSection().smf30exn() == null || r30.identificationSection().smf30exn().length() == 0 ?
 	        		r30.identificationSection().smf30pgm()
 	        		: r30.identificationSection().smf30exn();
-	    	
+
 	    	if (includeRecord(r30, program))
 	    	{
-				LocalDateTime periodStart = grouping.bucketStart(r30.smfDateTime());
-        		CpuStats cpuStats = stats
-        				.computeIfAbsent(periodStart, ps -> new HashMap<>())
-        				.computeIfAbsent(r30.system(), ps -> new HashMap<>())
-                        .computeIfAbsent(program, p -> new CpuStats());
-        		
-	    		cpuStats.add(r30);
+	    		LocalDateTime periodStart = grouping.bucketStart(r30.smfDateTime());
+	    		if (approximateStats != null)
+	    		{
+	    			CpuStats recordStats = new CpuStats();
+	    			recordStats.add(r30);
+	    			approximateStats
+	    				.computeIfAbsent(periodStart, ps -> new HashMap<>())
+	    				.computeIfAbsent(r30.system(), ps -> new TopCpu())
+	    				.add(program, recordStats);
+	    		}
+	    		else
+	    		{
+	    			CpuStats cpuStats = stats
+	    					.computeIfAbsent(periodStart, ps -> new HashMap<>())
+	    					.computeIfAbsent(r30.system(), ps -> new HashMap<>())
+	    					.computeIfAbsent(program, p -> new CpuStats());
+
+	    			cpuStats.add(r30);
+	    		}
+	    	}
+	    }
+
+	    /**
+	     * Add the statistics from another Report, e.g. for another input
+	     * processed on a different thread.
+	     */
+	    void merge(Report other)
+	    {
+	    	other.stats.forEach((periodStart, systems) ->
+	    		systems.forEach((system, programs) ->
+	    			programs.forEach((program, cpuStats) -> 
+	    				stats.computeIfAbsent(periodStart, ps -> new HashMap<>())
+	    					.computeIfAbsent(system, ps -> new HashMap<>())
+	    					.computeIfAbsent(program, p -> new CpuStats())
+	    					.add(cpuStats))));
+	    	if (approximateStats != null)
+	    	{
+	    		other.approximateStats.forEach((periodStart, systems) ->
+	    			systems.forEach((system, topCpu) ->
+	    				approximateStats.computeIfAbsent(periodStart, ps -> new HashMap<>())
+	    					.computeIfAbsent(system, ps -> new TopCpu())
+	    					.merge(topCpu)));
+	    	}
+	    }
+
+	    void write()
+	    {
+	    	if (approximateStats != null)
+	    	{
+	    		writeApproximateReport(approximateStats, grouping);
+	    	}
+	    	else
+	    	{
+	    		writeReport(stats, grouping);
 	    	}
 	    }
 	}
@@ -263,6 +402,220 @@ public class CpuByProgramName
 	    });
 	}
 
+    /**
+     * Write the report from the approximate statistics
+     * @param stats Map of collected statistics
+     * @param grouping Grouping value (MONTH, DAY, HOUR)
+     */
+	private static void writeApproximateReport(Map<LocalDateTime, Map<String, TopCpu>> stats,
+			Grouping grouping)
+	{
+		// write heading
+        System.out.format("%-19s %-12s %-20s %14s %14s %14s %14s %14s%n", 
+        		"Time", 
+        		"System", 
+        		"Program", 
+        		"CP Time", 
+        		"CP MSU",
+                "zIIP Time", 
+                "zIIP MSU",
+                "Max Error");
+
+        new TreeMap<>(stats).forEach((time, systems) -> // sort by time
+        {
+			System.out.println();
+			CpuStats periodTotal = new CpuStats();
+			new TreeMap<>(systems).forEach((system, topCpu) -> // sort by system
+			{
+				List<TopCpu.Counter> counters = topCpu.top();
+				CpuStats shown = new CpuStats();
+            	for (TopCpu.Counter counter : counters.subList(0, Math.min(TOP_LIMIT, counters.size())))
+            	{
+            		CpuStats cs = counter.stats;
+                    System.out.format("%-19s %-12s %-20s %14s %14.2f %14s %14.2f %14s%n", 
+                    		grouping.periodHeading(time),
+                    		system,
+                    		counter.name, 
+		                    formatSeconds(cs.cpSeconds),
+		                    cs.cpMsu,
+		                    formatSeconds(cs.ziipSeconds),
+		                    cs.ziipMsu,
+		                    formatSeconds(counter.error));
+                    shown.add(cs);
+            	}
+            	
+            	if (counters.size() > TOP_LIMIT || topCpu.lowest() > 0)
+            	{
+            		// everything not shown above, from the exact totals
+            		CpuStats other = new CpuStats();
+            		other.cpSeconds = topCpu.total.cpSeconds - shown.cpSeconds;
+            		other.cpMsu = topCpu.total.cpMsu - shown.cpMsu;
+            		other.ziipSeconds = topCpu.total.ziipSeconds - shown.ziipSeconds;
+            		other.ziipMsu = topCpu.total.ziipMsu - shown.ziipMsu;
+                    System.out.format("%-19s %-12s %-20s %14s %14.2f %14s %14.2f%n", 
+                    		grouping.periodHeading(time),
+                    		system,
+                    		"OTHER", 
+		                    formatSeconds(other.cpSeconds),
+		                    other.cpMsu,
+		                    formatSeconds(other.ziipSeconds),
+		                    other.ziipMsu);
+            	}
+            	System.out.println();
+            	periodTotal.add(topCpu.total);
+			});
+	        System.out.format("%n%-19s %-12s %-20s %14s %14.2f %14s %14.2f%n",
+	        		grouping.periodHeading(time),
+	        		"",
+	        		"Total",
+	        		formatSeconds(periodTotal.cpSeconds),
+	        		periodTotal.cpMsu,
+	        		formatSeconds(periodTotal.ziipSeconds),
+	        		periodTotal.ziipMsu);
+        });
+        
+        System.out.format("%nApproximate values: up to %d programs are tracked for each period and system.%n"
+        		+ "CPU values for a program can be lower than the real value by up to Max Error.%n", 
+        		APPROXIMATE_COUNTERS);
+	}
+
+	/**
+	 * Approximate top names by CPU time in fixed memory, using the 
+	 * Space-Saving algorithm.
+	 * 
+	 * Up to APPROXIMATE_COUNTERS names are tracked. When a new name is seen
+	 * and all the counters are in use, the counter with the lowest CPU time
+	 * is reassigned to the new name, and the new name starts with that CPU 
+	 * time as its possible error. The real CPU time for a tracked name is
+	 * between cpuTime - error and cpuTime. The error is at most total CPU 
+	 * time / number of counters, and any name that used more than that is
+	 * always tracked.
+	 * 
+	 * The statistics for a name are the values added since it was last 
+	 * assigned a counter, i.e. a lower bound. Totals are exact.
+	 */
+	private static class TopCpu
+	{
+		private final Map<String, Counter> counters = new HashMap<>();
+		private final TreeSet<Counter> byCpu = new TreeSet<>(
+				Comparator.comparingDouble((Counter counter) -> counter.cpuTime)
+					.thenComparing(counter -> counter.name));
+		// exact totals for all names
+		private final CpuStats total = new CpuStats();
+
+		void add(String name, CpuStats stats)
+		{
+			total.add(stats);
+			double cpuTime = stats.totalCpuTime();
+			Counter counter = counters.get(name);
+			if (counter == null)
+			{
+				if (counters.size() < APPROXIMATE_COUNTERS)
+				{
+					counter = new Counter(name, 0);
+				}
+				else if (cpuTime > 0)
+				{
+					// replace the name with the lowest CPU time 
+					Counter lowest = byCpu.pollFirst();
+					counters.remove(lowest.name);
+					counter = new Counter(name, lowest.cpuTime);
+				}
+				else
+				{
+					return; // no CPU time so it can't replace another name
+				}
+				counters.put(name, counter);
+			}
+			else
+			{
+				// remove and add again to update the sort order
+				byCpu.remove(counter);
+			}
+			counter.cpuTime += cpuTime;
+			counter.stats.add(stats);
+			byCpu.add(counter);
+		}
+
+		/**
+		 * Add the counters from another TopCpu. A name that is not tracked 
+		 * by one of them could have up to its lowest CPU time, which is 
+		 * added to the CPU time and error.
+		 */
+		void merge(TopCpu other)
+		{
+			double lowest = lowest();
+			double otherLowest = other.lowest();
+			Map<String, Counter> merged = new HashMap<>();
+			for (Counter counter : counters.values())
+			{
+				Counter otherCounter = other.counters.get(counter.name);
+				merged.put(counter.name, otherCounter != null
+						? counter.merge(otherCounter)
+						: counter.merge(new Counter(counter.name, otherLowest)));
+			}
+			for (Counter otherCounter : other.counters.values())
+			{
+				if (!counters.containsKey(otherCounter.name))
+				{
+					merged.put(otherCounter.name, new Counter(otherCounter.name, lowest).merge(otherCounter));
+				}
+			}
+			
+			counters.clear();
+			byCpu.clear();
+			byCpu.addAll(merged.values());
+			while (byCpu.size() > APPROXIMATE_COUNTERS)
+			{
+				byCpu.pollFirst();
+			}
+			for (Counter counter : byCpu)
+			{
+				counters.put(counter.name, counter);
+			}
+			total.add(other.total);
+		}
+
+		/**
+		 * The most CPU time a name that is not tracked could have used
+		 */
+		double lowest()
+		{
+			return counters.size() < APPROXIMATE_COUNTERS ? 0 : byCpu.first().cpuTime;
+		}
+
+		/**
+		 * The tracked names, highest CPU time first
+		 */
+		List<Counter> top()
+		{
+			return new ArrayList<>(byCpu.descendingSet());
+		}
+
+		private static class Counter
+		{
+			Counter(String name, double error)
+			{
+				this.name = name;
+				this.cpuTime = error;
+				this.error = error;
+			}
+
+			Counter merge(Counter other)
+			{
+				cpuTime += other.cpuTime;
+				error += other.error;
+				stats.add(other.stats);
+				return this;
+			}
+
+			final String name;
+			double cpuTime;
+			double error;
+			final CpuStats stats = new CpuStats();
+		}
+	}
+
 	private static class CpuStats
 	{
 		double totalCpuTime()
@@ -277,10 +630,7 @@ public class CpuByProgramName
 	    	{
 	    		for (CpuStats s : byClass.values())
 	    		{
-	    			t.cpSeconds += s.cpSeconds;
-	    			t.cpMsu += s.cpMsu;
-	    			t.ziipSeconds += s.ziipSeconds;
-	    			t.ziipMsu += s.ziipMsu;
+	    			t.add(s);
 	    		}
 	    	}
 	    	return t;
@@ -291,14 +641,26 @@ public class CpuByProgramName
 	    	CpuStats t = new CpuStats();
 	    	for (CpuStats s : parts)
 	    	{
-	    		t.cpSeconds += s.cpSeconds;
-	    		t.cpMsu += s.cpMsu;
-	    		t.ziipSeconds += s.ziipSeconds;
-	    		t.ziipMsu += s.ziipMsu;
+	    		t.add(s);
 	    	}
 	    	return t;
 	    }
 
+	    /**
+	     * Add the values from another CpuStats, e.g. to merge 
+	     * statistics collected on different threads.
+	     * @param other the other CpuStats
+	     * @return this CpuStats
+	     */
+	    CpuStats add(CpuStats other)
+	    {
+	    	cpSeconds += other.cpSeconds;
+	    	cpMsu += other.cpMsu;
+	    	ziipSeconds += other.ziipSeconds;
+	    	ziipMsu += other.ziipMsu;
+	    	return this;
+	    }
+
 	    public void add(Smf30Record r30)
 	    {
 	    	var processorAccountingSection = r30.processorAccountingSection();
@@ -344,7 +706,7 @@ public class CpuByProgramName
 	 * Enum for grouping, calculates the bucket start time for a record time 
 	 * and formats headings appropriately.
 	 */
-	private enum Grouping
+	enum Grouping
 	{
 	    MONTH, DAY, HOUR;
 	
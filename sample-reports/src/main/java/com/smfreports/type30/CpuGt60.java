@@ -2,6 +2,7 @@ package com.smfreports.type30;
                                                                
 import java.io.IOException;                                                                     
 import java.time.*;
+import java.util.*;
 
 import com.blackhillsoftware.smf.SmfRecord;                                                     
 import com.blackhillsoftware.smf.SmfRecordReader;                                               
@@ -22,27 +23,55 @@ public class CpuGt60
         // SmfRecordReader.fromName(...) accepts a filename, a DD name in the
         // format //DD:DDNAME or MVS dataset name in the form //'DATASET.NAME'
         
+        Report report = new Report();
         try (SmfRecordReader reader = SmfRecordReader.fromName(args[0])) 
         { 
             reader.include(30, 5);
             for (SmfRecord record : reader)                                                     
             {                                                                                   
-                Smf30Record r30 = Smf30Record.from(record);                                      
-                for (ProcessorAccountingSection procAcct 
-                        : r30.processorAccountingSections())   
-                {                                                                               
-                    Duration cpuTime = procAcct.smf30cpt()
-                            .plus(procAcct.smf30cps());           
-                    if (cpuTime.getSeconds() >= 60)                                             
-                    {                                                                           
-                        System.out.format("%-23s %-8s %12s%n",                                  
-                           r30.smfDateTime(), 
-                           r30.identificationSection().smf30jbn(), 
-                           cpuTime);  
-                    }                                                                           
-                }                                                                               
+                report.add(Smf30Record.from(record));
+                report.write(); // write each job as it is found
             }                                                                                   
         }
         System.out.println("Done");
     }                                                                                           
+
+    /**
+     * A line for each job with at least 60 seconds of CPU time in a
+     * processor accounting section of its job end record.
+     */
+    static class Report
+    {
+        // SMF 30 subtypes used by the report
+        static final Set<Integer> SUBTYPES = Set.of(5);
+
+        // lines not yet written
+        private final List<String> lines = new ArrayList<>();
+
+        void add(Smf30Record r30)
+        {
+            for (ProcessorAccountingSection procAcct 
+                    : r30.processorAccountingSections())   
+            {                                                                               
+                Duration cpuTime = procAcct.smf30cpt()
+                        .plus(procAcct.smf30cps());           
+                if (cpuTime.getSeconds() >= 60)                                             
+                {                                                                           
+                    lines.add(String.format("%-23s %-8s %12s",                                  
+                       r30.smfDateTime(), 
+                       r30.identificationSection().smf30jbn(), 
+                       cpuTime));  
+                }                                                                           
+            }                                                                               
+        }
+
+        void write()
+        {
+            for (String line : lines)
+            {
+                System.out.println(line);
+            }
+            lines.clear();
+        }
+    }
 }                                                                                               
\ No newline at end of file
@@ -21,10 +21,7 @@ public class JobsByJobname
             return;
         }
         
-        // A map of Job Names to JobData entries to collect information about each
-        // group of jobs.
-
-        Map<String, JobData> jobs = new HashMap<String, JobData>();
+        Report report = new Report();
 
         // SmfRecordReader.fromName(...) accepts a filename, a DD name in the
         // format //DD:DDNAME or MVS dataset name in the form //'DATASET.NAME'
@@ -36,22 +33,44 @@ public class JobsByJobname
             
             for (SmfRecord record : reader)
             {
-                Smf30Record r30 = Smf30Record.from(record); 
-            
-                // Optionally filter here, e.g. to include only jobs running in job class A:
-                // if (r30.identificationSection().smf30cl8().equals("A"))
-                // {
-
-                // computeIfAbsent : returns an existing entry or a new entry created 
-                // using the supplied function  
-                JobData jobentry = jobs
-                    .computeIfAbsent(
-                            r30.identificationSection().smf30jbn(), // jobname
-                            x -> new JobData());
-                jobentry.accumulateData(r30);                 
+                report.add(Smf30Record.from(record)); 
             }
         }
-        writeReport(jobs);
+        report.write();
+    }
+
+    /**
+     * Job counts and CPU, zIIP, connect time and EXCP totals by jobname
+     * from job end records.
+     */
+    static class Report
+    {
+        // SMF 30 subtypes used by the report
+        static final Set<Integer> SUBTYPES = Set.of(5);
+
+        // A map of Job Names to JobData entries to collect information about each
+        // group of jobs.
+        private final Map<String, JobData> jobs = new HashMap<String, JobData>();
+
+        void add(Smf30Record r30)
+        {
+            // Optionally filter here, e.g. to include only jobs running in job class A:
+            // if (r30.identificationSection().smf30cl8().equals("A"))
+            // {
+
+            // computeIfAbsent : returns an existing entry or a new entry created 
+            // using the supplied function  
+            JobData jobentry = jobs
+                .computeIfAbsent(
+                        r30.identificationSection().smf30jbn(), // jobname
+                        x -> new JobData());
+            jobentry.accumulateData(r30);                 
+        }
+
+        void write()
+        {
+            writeReport(jobs);
+        }
     }
 
     /**
@@ -36,8 +36,7 @@ public class PrimeShiftTopJobs
             return;
         }
         
-        // Create nested maps, DayOfWeek -> Jobname -> Job Data to collect information            
-        Map<DayOfWeek, HashMap<String, JobData>> jobsByDay = new HashMap<DayOfWeek, HashMap<String, JobData>>();
+        Report report = new Report();
 
         // SmfRecordReader.fromName(...) accepts a filename, a DD name in the
         // format //DD:DDNAME or MVS dataset name in the form //'DATASET.NAME'
@@ -49,22 +48,50 @@ public class PrimeShiftTopJobs
                 .include(30, 2)
                 .include(30, 3)
                 .stream()
-                .filter(record -> primeDays.contains(record.smfDate().getDayOfWeek())
-                    && record.smfTime().isAfter(primeStartTime)
-                    && record.smfTime().isBefore(primeEndTime))
+                .filter(record -> isPrimeShift(record.smfDateTime()))
                 .map(record -> Smf30Record.from(record))
-                .forEach(r30 ->
-                {
-                    jobsByDay
-                        // Find entry for day of week or add new entry
-                        .computeIfAbsent(r30.smfDate().getDayOfWeek(), day -> new HashMap<>())
-                        // Find entry for job name or add new entry 
-                        .computeIfAbsent(r30.identificationSection().smf30jbn(), job -> new JobData())
-                        .add(r30);                        
-                });
+                .forEach(r30 -> report.add(r30));
         }
 
-        writeReport(jobsByDay);
+        report.write();
+    }
+
+    private static boolean isPrimeShift(LocalDateTime time)
+    {
+        return primeDays.contains(time.getDayOfWeek())
+            && time.toLocalTime().isAfter(primeStartTime)
+            && time.toLocalTime().isBefore(primeEndTime);
+    }
+
+    /**
+     * CPU and zIIP time for prime shift jobs by day of week and jobname
+     * from interval records.
+     */
+    static class Report
+    {
+        // SMF 30 subtypes used by the report
+        static final Set<Integer> SUBTYPES = Set.of(2, 3);
+
+        // Create nested maps, DayOfWeek -> Jobname -> Job Data to collect information            
+        private final Map<DayOfWeek, HashMap<String, JobData>> jobsByDay = new HashMap<DayOfWeek, HashMap<String, JobData>>();
+
+        void add(Smf30Record r30)
+        {
+            if (isPrimeShift(r30.smfDateTime()))
+            {
+                jobsByDay
+                    // Find entry for day of week or add new entry
+                    .computeIfAbsent(r30.smfDate().getDayOfWeek(), day -> new HashMap<>())
+                    // Find entry for job name or add new entry 
+                    .computeIfAbsent(r30.identificationSection().smf30jbn(), job -> new JobData())
+                    .add(r30);                        
+            }
+        }
+
+        void write()
+        {
+            writeReport(jobsByDay);
+        }
     }
 
     /**
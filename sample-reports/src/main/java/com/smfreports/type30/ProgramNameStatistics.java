@@ -16,7 +16,7 @@ public class ProgramNameStatistics
             return;
         }
         
-        Map<String, ProgramData> programs = new HashMap<String, ProgramData>();
+        Report report = new Report();
 
         // SmfRecordReader.fromName(...) accepts a filename, a DD name in the
         // format //DD:DDNAME or MVS dataset name in the form //'DATASET.NAME'
@@ -27,19 +27,40 @@ public class ProgramNameStatistics
                 .include(30, 4)
                 .stream()
                 .map(record -> Smf30Record.from(record))
-                .filter(r30 -> r30.completionSection() != null 
-                    && !r30.completionSection().smf30flh()) // not flushed
-                .filter(r30 -> r30.header().smf30wid().equals("JES2"))
-                .forEach(r30 ->
-                {
-                    String programName = r30.identificationSection().smf30pgm();
-                    programs
-                        .computeIfAbsent(programName, x -> new ProgramData(programName))
-                        .add(r30);
-                });
-        }
-
-        writeReport(programs);
+                .forEach(r30 -> report.add(r30));
+        }
+
+        report.write();
+    }
+
+    /**
+     * Count, CPU, zIIP, connect time and EXCPs by program name from the
+     * step end records of JES2 jobs that were not flushed.
+     */
+    static class Report
+    {
+        // SMF 30 subtypes used by the report
+        static final Set<Integer> SUBTYPES = Set.of(4);
+
+        private final Map<String, ProgramData> programs = new HashMap<String, ProgramData>();
+
+        void add(Smf30Record r30)
+        {
+            if (r30.completionSection() != null 
+                    && !r30.completionSection().smf30flh() // not flushed
+                    && r30.header().smf30wid().equals("JES2"))
+            {
+                String programName = r30.identificationSection().smf30pgm();
+                programs
+                    .computeIfAbsent(programName, x -> new ProgramData(programName))
+                    .add(r30);
+            }
+        }
+
+        void write()
+        {
+            writeReport(programs);
+        }
     }
 
     private static void writeReport(Map<String, ProgramData> programs)
@@ -0,0 +1,181 @@
+package com.smfreports.type30;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+import com.blackhillsoftware.smf.*;
+import com.blackhillsoftware.smf.smf30.Smf30Record;
+
+/**
+ * Run several of the SMF type 30 reports from one pass of the data.
+ * <p>
+ * The input is read once and each record is converted to a Smf30Record
+ * once, then passed to each report that uses the record subtype. The
+ * reports are written in turn after all the input has been read.
+ * <p>
+ * Each report program has a nested Report class that collects the data
+ * for its report and lists the subtypes it uses, so the reports run the
+ * same way here as they do on their own.
+ */
+public class Type30Reports
+{
+    private static void printUsage()
+    {
+        System.out.println("Usage: Type30Reports [-month|-day|-hour] [--reports name,name...] <input-name> [<input-name> ...]");
+        System.out.println("  -month|-day|-hour : grouping for CpuByJobname and CpuByProgramName, default month.");
+        System.out.println("  --reports         : reports to run, default all:");
+        System.out.println("                      " + String.join(",", REPORT_NAMES));
+        System.out.println("  <input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");
+    }
+
+    private static final List<String> REPORT_NAMES = Arrays.asList(
+            "CpuByJobname",
+            "CpuByProgramName",
+            "JobsByJobname",
+            "PrimeShiftTopJobs",
+            "ProgramNameStatistics",
+            "CpuGt60");
+
+    public static void main(String[] args) throws IOException
+    {
+        CpuByJobname.Grouping jobnameGrouping = CpuByJobname.Grouping.MONTH;
+        CpuByProgramName.Grouping programGrouping = CpuByProgramName.Grouping.MONTH;
+        List<String> reportNames = REPORT_NAMES;
+        List<String> inputNames = new ArrayList<>();
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                case "-month":
+                case "-day":
+                case "-hour":
+                    String grouping = args[i].substring(1).toUpperCase();
+                    jobnameGrouping = CpuByJobname.Grouping.valueOf(grouping);
+                    programGrouping = CpuByProgramName.Grouping.valueOf(grouping);
+                    break;
+                case "--reports":
+                    reportNames = Arrays.asList(args[++i].split(","));
+                    break;
+                default:
+                    inputNames.add(args[i]);
+                    break;
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+            inputNames.clear();
+        }
+
+        if (inputNames.isEmpty())
+        {
+            printUsage();
+            return;
+        }
+
+        List<Report> reports = new ArrayList<>();
+        for (String name : reportNames)
+        {
+            switch (name)
+            {
+            case "CpuByJobname":
+                CpuByJobname.Report cpuByJobname = new CpuByJobname.Report(jobnameGrouping);
+                reports.add(new Report(name, CpuByJobname.Report.SUBTYPES,
+                        cpuByJobname::add, cpuByJobname::write));
+                break;
+            case "CpuByProgramName":
+                CpuByProgramName.Report cpuByProgramName = new CpuByProgramName.Report(programGrouping);
+                reports.add(new Report(name, CpuByProgramName.Report.SUBTYPES,
+                        cpuByProgramName::add, cpuByProgramName::write));
+                break;
+            case "JobsByJobname":
+                JobsByJobname.Report jobsByJobname = new JobsByJobname.Report();
+                reports.add(new Report(name, JobsByJobname.Report.SUBTYPES,
+                        jobsByJobname::add, jobsByJobname::write));
+                break;
+            case "PrimeShiftTopJobs":
+                PrimeShiftTopJobs.Report primeShiftTopJobs = new PrimeShiftTopJobs.Report();
+                reports.add(new Report(name, PrimeShiftTopJobs.Report.SUBTYPES,
+                        primeShiftTopJobs::add, primeShiftTopJobs::write));
+                break;
+            case "ProgramNameStatistics":
+                ProgramNameStatistics.Report programNameStatistics = new ProgramNameStatistics.Report();
+                reports.add(new Report(name, ProgramNameStatistics.Report.SUBTYPES,
+                        programNameStatistics::add, programNameStatistics::write));
+                break;
+            case "CpuGt60":
+                CpuGt60.Report cpuGt60 = new CpuGt60.Report();
+                reports.add(new Report(name, CpuGt60.Report.SUBTYPES,
+                        cpuGt60::add, cpuGt60::write));
+                break;
+            default:
+                System.err.println("Unknown report: " + name);
+                printUsage();
+                return;
+            }
+        }
+
+        // the reports for each subtype
+        Map<Integer, List<Report>> bySubtype = new HashMap<>();
+        for (Report report : reports)
+        {
+            for (int subtype : report.subtypes)
+            {
+                bySubtype.computeIfAbsent(subtype, x -> new ArrayList<>()).add(report);
+            }
+        }
+
+        long count = 0;
+        for (String name : inputNames)
+        {
+            try (SmfRecordReader reader = SmfRecordReader.fromName(name))
+            {
+                for (int subtype : bySubtype.keySet())
+                {
+                    reader.include(30, subtype);
+                }
+                for (SmfRecord record : reader)
+                {
+                    Smf30Record r30 = Smf30Record.from(record);
+                    for (Report report : bySubtype.get(r30.subType()))
+                    {
+                        report.add.accept(r30);
+                    }
+                    count++;
+                }
+            }
+        }
+
+        for (Report report : reports)
+        {
+            System.out.format("%n%s%n", report.name);
+            report.write.run();
+        }
+
+        System.out.format("%n%,d SMF 30 records read for %d reports.%n", count, reports.size());
+    }
+
+    /**
+     * A report to be run, with the subtypes it uses and functions to
+     * add a record and write the report.
+     */
+    private static class Report
+    {
+        Report(String name, Set<Integer> subtypes, Consumer<Smf30Record> add, Runnable write)
+        {
+            this.name = name;
+            this.subtypes = subtypes;
+            this.add = add;
+            this.write = write;
+        }
+
+        final String name;
+        final Set<Integer> subtypes;
+        final Consumer<Smf30Record> add;
+        final Runnable write;
+    }
+}
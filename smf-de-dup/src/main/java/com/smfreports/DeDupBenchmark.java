@@ -0,0 +1,312 @@
+package com.smfreports;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+
+import com.blackhillsoftware.smf.SmfRecord;
+import com.blackhillsoftware.smf.SmfRecordReader;
+import com.blackhillsoftware.smf.SmfRecordWriter;
+
+/**
+ * Measure duplicate removal performance, for each stage separately
+ * and end to end, so changes to hashing, the hash table and
+ * parallelism can be compared.
+ * <p>
+ * The stages are:
+ * <ul>
+ * <li>read - read and count the records from the input files</li>
+ * <li>hash - calculate the record hashes, for records held in memory</li>
+ * <li>insert - check the hashes for duplicates using a new DuplicateDetector</li>
+ * <li>write - write the unique records to a temporary file</li>
+ * <li>end to end - run SmfDeDup writing the output to a temporary file</li>
+ * </ul>
+ * Each stage is run several times before the measured runs to allow
+ * the JIT compiler to optimize the code. Bytes allocated are measured
+ * for the benchmark thread only, so they do not include allocations
+ * by the hashing threads when SmfDeDup runs with more than 1 thread.
+ * <p>
+ * GenerateDupInput can be used to create input data with a known
+ * duplicate rate.
+ */
+public class DeDupBenchmark
+{
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+
+    private static void printUsage() {
+        System.out.println("Usage: DeDupBenchmark [options] <input-file> [input-file2 ...]");
+        System.out.println("");
+        System.out.println("Measure SmfDeDup performance for each stage and end to end.");
+        System.out.println("");
+        System.out.println("  --limit N    Maximum number of records to read into memory for");
+        System.out.println("               the hash, insert and write stages. Default: 1000000");
+        System.out.println("  --hash name  Hash algorithm: murmur3 (default) or sha1.");
+        System.out.println("  --threads N  Threads for the end to end run. Default: 1");
+        System.out.println("  --window N   Window in minutes for the insert stage and end to end");
+        System.out.println("               run. Default: 0, no window.");
+        System.out.println("  --verify     Verify duplicates in the insert stage and end to end.");
+        System.out.println("  input-file   File containing SMF records. Binary data, RECFM=U or V[B]");
+        System.out.println("               including RDW.");
+    }
+
+    /**
+     * A benchmark stage
+     */
+    private interface Stage
+    {
+        void run() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0 || args[0].equals("--help") || args[0].equals("-h"))
+        {
+            printUsage();
+            System.exit(0);
+        }
+
+        int limit = 1000000;
+        HashAlgorithm algorithm = HashAlgorithm.MURMUR3;
+        int threads = 1;
+        int windowMinutes = 0;
+        boolean verify = false;
+        List<String> names = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                case "--limit":
+                    limit = Integer.parseInt(args[++i]);
+                    break;
+                case "--hash":
+                    algorithm = HashAlgorithm.fromName(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--window":
+                    windowMinutes = Integer.parseInt(args[++i]);
+                    break;
+                case "--verify":
+                    verify = true;
+                    break;
+                default:
+                    names.add(args[i]);
+                    break;
+                }
+            }
+        }
+        catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e)
+        {
+            names.clear();
+        }
+        if (names.isEmpty() || threads < 1 || windowMinutes < 0)
+        {
+            printUsage();
+            System.exit(0);
+        }
+
+        // Load records for the in-memory stages
+        List<SmfRecord> records = new ArrayList<>();
+        long bytes = 0;
+        for (String name : names)
+        {
+            try (SmfRecordReader reader = SmfRecordReader.fromName(name))
+            {
+                for (SmfRecord record : reader)
+                {
+                    if (records.size() >= limit) break;
+                    records.add(record);
+                    bytes += record.getBytes().length;
+                }
+            }
+        }
+        if (records.isEmpty())
+        {
+            System.out.println("No input records.");
+            return;
+        }
+
+        RecordHasher hasher = algorithm.newHasher();
+        long[] hashes = new long[records.size() * 2];
+        boolean[] duplicate = new boolean[records.size()];
+        Path outputFile = Files.createTempFile("dedup", ".smf");
+        final boolean verifyDuplicates = verify;
+        final int window = windowMinutes;
+
+        List<String> dedupArgs = new ArrayList<>(Arrays.asList(
+                "--threads", Integer.toString(threads),
+                "--hash", algorithm.name(),
+                "--window", Integer.toString(windowMinutes)));
+        if (verify)
+        {
+            dedupArgs.add("--verify");
+        }
+        dedupArgs.add(names.get(0));
+        dedupArgs.add(outputFile.toString());
+
+        System.out.format("%,d records in memory, average length %,d, hash %s.%n%n",
+                records.size(), bytes / records.size(), algorithm.name().toLowerCase());
+        System.out.format("%-12s %12s %14s %10s %12s%n",
+                "Stage", "Seconds", "Records/sec", "MB/sec", "Bytes/rec");
+
+        try
+        {
+            long[] readCount = new long[1];
+            Result read = measure(() ->
+            {
+                readCount[0] = 0;
+                for (String name : names)
+                {
+                    try (SmfRecordReader reader = SmfRecordReader.fromName(name))
+                    {
+                        for (SmfRecord record : reader)
+                        {
+                            readCount[0]++;
+                        }
+                    }
+                }
+            });
+            read.print("read", readCount[0], -1);
+
+            measure(() ->
+            {
+                for (int i = 0; i < records.size(); i++)
+                {
+                    hasher.hash(records.get(i).getBytes(), hashes, i * 2);
+                }
+            }).print("hash", records.size(), bytes);
+
+            measure(() ->
+            {
+                try (DuplicateDetector detector = new DuplicateDetector(verifyDuplicates, window))
+                {
+                    for (int i = 0; i < records.size(); i++)
+                    {
+                        duplicate[i] = detector.isDuplicate(records.get(i), hashes[i * 2], hashes[i * 2 + 1]);
+                    }
+                }
+            }).print("insert", records.size(), bytes);
+
+            measure(() ->
+            {
+                try (SmfRecordWriter writer = SmfRecordWriter.fromName(outputFile.toString()))
+                {
+                    for (int i = 0; i < records.size(); i++)
+                    {
+                        if (!duplicate[i])
+                        {
+                            writer.write(records.get(i));
+                        }
+                    }
+                }
+            }).print("write", records.size(), bytes);
+
+            // SmfDeDup reads the first input file
+            long endToEndCount = names.size() == 1 ? readCount[0] : countRecords(names.get(0));
+            PrintStream stdout = System.out;
+            Result endToEnd;
+            try (PrintStream discard = new PrintStream(OutputStream.nullOutputStream()))
+            {
+                System.setOut(discard);
+                endToEnd = measure(() -> SmfDeDup.main(dedupArgs.toArray(new String[0])));
+            }
+            finally
+            {
+                System.setOut(stdout);
+            }
+            endToEnd.print("end to end", endToEndCount, -1);
+        }
+        finally
+        {
+            Files.deleteIfExists(outputFile);
+        }
+    }
+
+    private static long countRecords(String name) throws IOException
+    {
+        long count = 0;
+        try (SmfRecordReader reader = SmfRecordReader.fromName(name))
+        {
+            for (SmfRecord record : reader)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Run a stage for the warm up and measured runs
+     * @return the average time and allocation for the measured runs
+     */
+    private static Result measure(Stage stage) throws IOException
+    {
+        for (int i = 0; i < WARMUP_RUNS; i++)
+        {
+            stage.run();
+        }
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_RUNS; i++)
+        {
+            stage.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+
+        return new Result(elapsed / 1e9 / MEASURED_RUNS,
+                allocatedBefore >= 0 && allocatedAfter >= 0
+                    ? (allocatedAfter - allocatedBefore) / MEASURED_RUNS
+                    : -1);
+    }
+
+    /**
+     * Bytes allocated by the current thread, if the JVM can report it.
+     * @return the number of bytes, or -1 if not available
+     */
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+            {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static class Result
+    {
+        Result(double seconds, long allocated)
+        {
+            this.seconds = seconds;
+            this.allocated = allocated;
+        }
+
+        private final double seconds;
+        private final long allocated;
+
+        /**
+         * Print the result
+         * @param records the number of records processed in each run
+         * @param bytes the number of bytes processed in each run, or -1 if not known
+         */
+        void print(String stage, long records, long bytes)
+        {
+            System.out.format("%-12s %12.3f %,14.0f %10s %12s%n",
+                    stage,
+                    seconds,
+                    records / seconds,
+                    bytes >= 0 ? String.format("%,.1f", bytes / seconds / (1024 * 1024)) : "",
+                    allocated >= 0 ? String.format("%,.1f", (double)allocated / records) : "n/a");
+        }
+    }
+}
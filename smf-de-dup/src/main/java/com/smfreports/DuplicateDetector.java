@@ -0,0 +1,254 @@
+package com.smfreports;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import com.blackhillsoftware.smf.SmfRecord;
+
+/**
+ * Identify duplicate records using a 128 bit hash of the record data.
+ * <p>
+ * Optionally, records can be verified: when a hash matches a previous
+ * record the data is compared byte for byte with the previous record.
+ * Unique records are copied to a temporary file for the comparison.
+ * If the data is different, the record is treated as unique and
+ * counted as a hash collision. Only one record can be kept for each 
+ * hash, so duplicates of the second record would not be detected.
+ * <p>
+ * Hashes loaded from a previous run with {@link #addKnown} have no
+ * record data available, so matches with those hashes are treated as
+ * duplicates without verification.
+ * <p>
+ * In windowed mode, hashes are kept in buckets by system and SMF minute
+ * and records are only compared with records from the same system and
+ * minute. Identical records must have the same system and time, so 
+ * this finds the same duplicates while the buckets are kept. Buckets
+ * are discarded when they are more than the window before the latest
+ * time seen for the system, so memory use depends on the window rather
+ * than the size of the input if the input is roughly in time order.
+ * Records older than the window are treated as unique.
+ */
+class DuplicateDetector implements Closeable
+{
+    // record store offset for hashes without record data
+    private static final long NOT_STORED = Long.MAX_VALUE;
+
+    // initial size of the table for each bucket in windowed mode
+    private static final int BUCKET_CAPACITY = 1 << 12;
+
+    private final FingerprintSet recordHashes;
+    private final RecordStore recordStore;
+    private final int windowMinutes;
+    private final Map<String, SystemWindow> windows = new HashMap<>();
+    private long collisions = 0;
+    private long lateRecords = 0;
+
+    /**
+     * Create a DuplicateDetector
+     * @param verify true to compare the data when hashes match
+     * @throws IOException if the temporary file for verification 
+     * cannot be created
+     */
+    DuplicateDetector(boolean verify) throws IOException
+    {
+        this(verify, 0);
+    }
+
+    /**
+     * Create a DuplicateDetector
+     * @param verify true to compare the data when hashes match
+     * @param windowMinutes the number of minutes of data to keep for 
+     * each system, or 0 to keep all hashes for the run
+     * @throws IOException if the temporary file for verification 
+     * cannot be created
+     */
+    DuplicateDetector(boolean verify, int windowMinutes) throws IOException
+    {
+        recordStore = verify ? new RecordStore() : null;
+        this.windowMinutes = windowMinutes;
+        // If we are verifying duplicates the table also holds the 
+        // offset of each record in the record store.
+        // In windowed mode this table only holds hashes from previous 
+        // runs, so start small.
+        recordHashes = new FingerprintSet(windowMinutes > 0 ? BUCKET_CAPACITY : 1 << 20, verify);
+    }
+
+    /**
+     * Check whether a record is a duplicate of a record seen previously.
+     * @param record the SMF record
+     * @param hashHigh the high order 64 bits of the record hash
+     * @param hashLow the low order 64 bits of the record hash
+     * @return true if the record is a duplicate
+     * @throws IOException if an error occurs reading or writing the 
+     * verification file
+     */
+    boolean isDuplicate(SmfRecord record, long hashHigh, long hashLow) throws IOException
+    {
+        if (windowMinutes == 0)
+        {
+            return isDuplicate(record.getBytes(), hashHigh, hashLow);
+        }
+        if (recordHashes.contains(hashHigh, hashLow))
+        {
+            // seen in a previous run
+            return true;
+        }
+        FingerprintSet bucket = windows
+                .computeIfAbsent(record.system(), key -> new SystemWindow())
+                .bucketFor(record.smfDateTime());
+        if (bucket == null)
+        {
+            // older than the window, can't be checked
+            return false;
+        }
+        return isDuplicate(bucket, record.getBytes(), hashHigh, hashLow);
+    }
+
+    /**
+     * Check whether a record is a duplicate of a record seen previously.
+     * Not available in windowed mode, because the system and time of 
+     * the record are required.
+     * @param data the record data
+     * @param hashHigh the high order 64 bits of the record hash
+     * @param hashLow the low order 64 bits of the record hash
+     * @return true if the record is a duplicate
+     * @throws IOException if an error occurs reading or writing the 
+     * verification file
+     */
+    boolean isDuplicate(byte[] data, long hashHigh, long hashLow) throws IOException
+    {
+        if (windowMinutes > 0)
+        {
+            throw new IllegalStateException("Record system and time are required in windowed mode");
+        }
+        return isDuplicate(recordHashes, data, hashHigh, hashLow);
+    }
+
+    private boolean isDuplicate(FingerprintSet table, byte[] data, long hashHigh, long hashLow) 
+            throws IOException
+    {
+        if (recordStore == null)
+        {
+            return !table.add(hashHigh, hashLow);
+        }
+
+        long offset = table.putIfAbsent(hashHigh, hashLow, recordStore.nextOffset());
+        if (offset == FingerprintSet.ABSENT)
+        {
+            recordStore.add(data);
+            return false;
+        }
+        if (offset == NOT_STORED || recordStore.matches(offset, data))
+        {
+            return true;
+        }
+        collisions++;
+        return false;
+    }
+
+    /**
+     * Add the hash of a record seen in a previous run. Records with this
+     * hash will be treated as duplicates.
+     * @param hashHigh the high order 64 bits of the record hash
+     * @param hashLow the low order 64 bits of the record hash
+     */
+    void addKnown(long hashHigh, long hashLow)
+    {
+        recordHashes.putIfAbsent(hashHigh, hashLow, NOT_STORED);
+    }
+
+    /**
+     * The number of records that had the same hash as a different record.
+     * Only counted if records are verified.
+     * @return the number of hash collisions
+     */
+    long collisions()
+    {
+        return collisions;
+    }
+
+    /**
+     * The number of records that were older than the window for their
+     * system when they were checked. These records are treated as unique
+     * because the hashes for their minute have been discarded.
+     * @return the number of late records
+     */
+    long lateRecords()
+    {
+        return lateRecords;
+    }
+
+    /**
+     * The number of unique hashes currently kept.
+     * @return the number of entries in the hash tables
+     */
+    long size()
+    {
+        long size = recordHashes.size();
+        for (SystemWindow window : windows.values())
+        {
+            for (FingerprintSet bucket : window.buckets.values())
+            {
+                size += bucket.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The amount of memory currently allocated for hash tables
+     * @return the table size in bytes
+     */
+    long tableBytes()
+    {
+        long bytes = recordHashes.tableBytes();
+        for (SystemWindow window : windows.values())
+        {
+            for (FingerprintSet bucket : window.buckets.values())
+            {
+                bytes += bucket.tableBytes();
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (recordStore != null)
+        {
+            recordStore.close();
+        }
+    }
+
+    /**
+     * The hash buckets for one system in windowed mode, by SMF minute. 
+     */
+    private class SystemWindow
+    {
+        private final TreeMap<Long, FingerprintSet> buckets = new TreeMap<>();
+        private long highWaterMinute = Long.MIN_VALUE;
+
+        FingerprintSet bucketFor(LocalDateTime smfDateTime)
+        {
+            long minute = Math.floorDiv(smfDateTime.toEpochSecond(ZoneOffset.UTC), 60);
+            if (minute > highWaterMinute)
+            {
+                highWaterMinute = minute;
+                // discard buckets that have dropped out of the window
+                buckets.headMap(highWaterMinute - windowMinutes).clear();
+            }
+            else if (minute < highWaterMinute - windowMinutes)
+            {
+                // The bucket for this minute has been discarded. Don't 
+                // create it again, or late data could use unlimited memory.
+                lateRecords++;
+                return null;
+            }
+            return buckets.computeIfAbsent(minute, 
+                    key -> new FingerprintSet(BUCKET_CAPACITY, recordStore != null));
+        }
+    }
+}
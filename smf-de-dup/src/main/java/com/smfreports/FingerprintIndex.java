@@ -0,0 +1,244 @@
+package com.smfreports;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * A persistent index of record hashes, so duplicates can be found across
+ * data processed in previous runs without reading that data again.
+ * <p>
+ * The index is a directory of segment files. Each segment holds the
+ * hashes of unique records for one SMF date, as 16 byte entries after
+ * a header with the index version and the hash algorithm. Hashes from
+ * different algorithms can't be compared, so a segment created with a
+ * different algorithm is an error. Each run writes new segments, named
+ * by SMF date and a run identifier:
+ * <pre>
+ *   2025-09-10.1757480000000.idx
+ * </pre>
+ * New segments are written as .tmp files and renamed when the run is
+ * committed. If a run fails, its hashes are not added to the index and
+ * the .tmp files are deleted the next time the index is opened.
+ * <p>
+ * Segments for SMF dates more than a specified number of days before
+ * the newest date in the index are deleted when the run is committed.
+ */
+class FingerprintIndex implements Closeable
+{
+    private static final String SEGMENT_SUFFIX = ".idx";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long MAGIC = 0x534D464944583031L; // "SMFIDX01"
+    private static final int VERSION = 1;
+
+    private final Path directory;
+    private final HashAlgorithm algorithm;
+    private final int retainDays;
+    private final String runId = Long.toString(System.currentTimeMillis());
+    private final Map<LocalDate, DataOutputStream> newSegments = new HashMap<>();
+    private LocalDate newestDate = null;
+
+    /**
+     * Open an index, creating the directory if it does not exist.
+     * @param directory the index directory
+     * @param algorithm the hash algorithm used for the records
+     * @param retainDays the number of days of data to keep, or 0 to keep all data
+     * @throws IOException if the directory can't be created or read
+     */
+    FingerprintIndex(Path directory, HashAlgorithm algorithm, int retainDays) throws IOException
+    {
+        this.directory = directory;
+        this.algorithm = algorithm;
+        this.retainDays = retainDays;
+        Files.createDirectories(directory);
+
+        // remove segments left by runs that did not complete
+        for (Path path : list(TEMP_SUFFIX))
+        {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Load the hashes from the index into a DuplicateDetector.
+     * @param detector the DuplicateDetector
+     * @return the number of hashes loaded
+     * @throws IOException if an error occurs reading the index, or a
+     * segment was created by a different version or hash algorithm
+     */
+    long load(DuplicateDetector detector) throws IOException
+    {
+        long count = 0;
+        for (Path path : list(SEGMENT_SUFFIX))
+        {
+            updateNewestDate(segmentDate(path));
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(path), 65536)))
+            {
+                long headerLength = readHeader(path, in);
+                // ignore an incomplete entry at the end of the file
+                long entries = (Files.size(path) - headerLength) / 16;
+                for (long i = 0; i < entries; i++)
+                {
+                    detector.addKnown(in.readLong(), in.readLong());
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Add the hash of a unique record to the index.
+     * @param smfDate the SMF date of the record
+     * @param hashHigh the high order 64 bits of the record hash
+     * @param hashLow the low order 64 bits of the record hash
+     * @throws IOException if an error occurs writing the index
+     */
+    void add(LocalDate smfDate, long hashHigh, long hashLow) throws IOException
+    {
+        DataOutputStream out = newSegments.get(smfDate);
+        if (out == null)
+        {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(segmentPath(smfDate, TEMP_SUFFIX)), 65536));
+            newSegments.put(smfDate, out);
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(algorithm.name());
+            updateNewestDate(smfDate);
+        }
+        out.writeLong(hashHigh);
+        out.writeLong(hashLow);
+    }
+
+    /**
+     * Make the hashes added in this run part of the index, and delete
+     * segments older than the retention period.
+     * @throws IOException if an error occurs updating the index
+     */
+    void commit() throws IOException
+    {
+        closeNewSegments();
+        for (LocalDate date : newSegments.keySet())
+        {
+            Files.move(segmentPath(date, TEMP_SUFFIX), segmentPath(date, SEGMENT_SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        newSegments.clear();
+
+        if (retainDays > 0 && newestDate != null)
+        {
+            LocalDate oldestRetained = newestDate.minusDays(retainDays - 1);
+            for (Path path : list(SEGMENT_SUFFIX))
+            {
+                if (segmentDate(path).isBefore(oldestRetained))
+                {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the index. Hashes added since the last commit are discarded.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        closeNewSegments();
+        for (LocalDate date : newSegments.keySet())
+        {
+            Files.deleteIfExists(segmentPath(date, TEMP_SUFFIX));
+        }
+        newSegments.clear();
+    }
+
+    /**
+     * Read and check the segment header.
+     * @return the length of the header
+     */
+    private long readHeader(Path path, DataInputStream in) throws IOException
+    {
+        try
+        {
+            if (in.readLong() != MAGIC)
+            {
+                throw new IOException("Not an index segment: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION)
+            {
+                throw new IOException("Unsupported index version " + version + ": " + path);
+            }
+            String segmentAlgorithm = in.readUTF();
+            if (!segmentAlgorithm.equals(algorithm.name()))
+            {
+                throw new IOException("Index segment " + path
+                        + " was created using hash " + segmentAlgorithm.toLowerCase()
+                        + ", not " + algorithm.name().toLowerCase()
+                        + ". Use the same --hash for every run with an index directory.");
+            }
+            // algorithm names are ASCII, so the UTF length is the string length
+            return Long.BYTES + Integer.BYTES + 2 + segmentAlgorithm.length();
+        }
+        catch (EOFException e)
+        {
+            throw new IOException("Not an index segment: " + path, e);
+        }
+    }
+
+    private void closeNewSegments() throws IOException
+    {
+        for (DataOutputStream out : newSegments.values())
+        {
+            out.close();
+        }
+    }
+
+    private void updateNewestDate(LocalDate date)
+    {
+        if (newestDate == null || date.isAfter(newestDate))
+        {
+            newestDate = date;
+        }
+    }
+
+    private Path segmentPath(LocalDate date, String suffix)
+    {
+        return directory.resolve(date.toString() + "." + runId + suffix);
+    }
+
+    private static LocalDate segmentDate(Path path)
+    {
+        String name = path.getFileName().toString();
+        return LocalDate.parse(name.substring(0, name.indexOf('.')));
+    }
+
+    /**
+     * List segment files with the specified suffix, ignoring
+     * other files in the directory.
+     */
+    private List<Path> list(String suffix) throws IOException
+    {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + suffix))
+        {
+            for (Path path : paths)
+            {
+                try
+                {
+                    segmentDate(path);
+                    result.add(path);
+                }
+                catch (DateTimeParseException | StringIndexOutOfBoundsException e)
+                {
+                    // not a segment file
+                }
+            }
+        }
+        return result;
+    }
+}
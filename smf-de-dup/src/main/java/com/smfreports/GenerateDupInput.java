@@ -0,0 +1,220 @@
+package com.smfreports;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import com.blackhillsoftware.smf.SmfRecord;
+import com.blackhillsoftware.smf.SmfRecordReader;
+import com.blackhillsoftware.smf.SmfRecordWriter;
+
+/**
+ * Generate test data for duplicate detection benchmarks.
+ * <p>
+ * Records are copied from the input file, repeating the input until
+ * the target number of records is written. Records from each repeat
+ * of the input have their SMF time increased by 1/100 second per
+ * repeat so they are not duplicates of the earlier copies.
+ * <p>
+ * Duplicates are injected at the specified rate by writing another
+ * copy of a record written previously. The time skew controls how far
+ * back the duplicated record can be: it is chosen from records with an
+ * SMF time within the skew of the record most recently written.
+ * <p>
+ * Each repeat of the input starts again at the earliest time, so records
+ * from the second and later repeats are out of time order. Use a count
+ * no larger than the input to test SmfDeDup with --window.
+ */
+public class GenerateDupInput
+{
+    // SMFxTME: time since midnight in hundredths of a second, at
+    // offset 6 in the record including the RDW
+    private static final int TIME_OFFSET = 6;
+    private static final int HUNDREDTHS_PER_DAY = 24 * 60 * 60 * 100;
+
+    // maximum number of earlier records kept as duplicate candidates
+    private static final int MAX_CANDIDATES = 100000;
+
+    private static void printUsage() {
+        System.out.println("Usage: GenerateDupInput [options] <count> <input-file> <output-file>");
+        System.out.println("");
+        System.out.println("Copy records from input-file to output-file, repeating until output-file");
+        System.out.println("contains the specified number of records, and inject duplicate records.");
+        System.out.println("");
+        System.out.println("  --dup-percent P  Percentage of output records that are duplicates of");
+        System.out.println("                   an earlier record. Default: 10");
+        System.out.println("  --skew M         Duplicates are copies of records with a SMF time up");
+        System.out.println("                   to M minutes before the latest record. Default: 5");
+        System.out.println("  --seed S         Random number seed. Default: 0");
+        System.out.println("  count            The target number of records");
+        System.out.println("  input-file       File containing SMF records. Binary data, RECFM=U or");
+        System.out.println("                   V[B] including RDW.");
+        System.out.println("  output-file      Output-file for records.");
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 3 || args[0].equals("--help") || args[0].equals("-h"))
+        {
+            printUsage();
+            System.exit(0);
+        }
+
+        double dupPercent = 10;
+        int skewMinutes = 5;
+        long seed = 0;
+        List<String> names = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                case "--dup-percent":
+                    dupPercent = Double.parseDouble(args[++i]);
+                    break;
+                case "--skew":
+                    skewMinutes = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    names.add(args[i]);
+                    break;
+                }
+            }
+        }
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+        {
+            names.clear();
+        }
+        if (names.size() != 3 || dupPercent < 0 || dupPercent >= 100 || skewMinutes < 0)
+        {
+            printUsage();
+            System.exit(0);
+        }
+
+        try (SmfRecordWriter writer = SmfRecordWriter.fromName(names.get(2)))
+        {
+            long target = Long.parseLong(names.get(0));
+            Random random = new Random(seed);
+            long out = 0;
+            long dups = 0;
+            int repeat = 0;
+
+            while (out < target)
+            {
+                long before = out;
+                // times start again at the beginning of each repeat
+                Candidates candidates = new Candidates(skewMinutes);
+                try (SmfRecordReader reader = SmfRecordReader.fromName(names.get(1)))
+                {
+                    for (SmfRecord record : reader)
+                    {
+                        if (out >= target) break;
+
+                        SmfRecord unique = repeat == 0 ? record : shiftTime(record, repeat);
+                        writer.write(unique);
+                        candidates.add(unique);
+                        out++;
+
+                        // write duplicates so they make up the requested
+                        // percentage of the output
+                        while (out < target
+                                && random.nextDouble() * 100 < dupPercent)
+                        {
+                            writer.write(candidates.choose(random));
+                            out++;
+                            dups++;
+                        }
+                    }
+                }
+                if (out == before)
+                {
+                    throw new RuntimeException("No records in input file!");
+                }
+                repeat++;
+                System.out.format("%d records...%n", out);
+            }
+
+            System.out.format("Finished, %d records out, %d duplicates injected, input repeated %d times.%n",
+                    out, dups, repeat);
+        }
+        catch (Exception e)
+        {
+            printUsage();
+            throw e;
+        }
+    }
+
+    /**
+     * Create a copy of a record with the SMF time increased
+     */
+    private static SmfRecord shiftTime(SmfRecord record, int hundredths)
+    {
+        byte[] data = record.getBytes().clone();
+        long time =
+                  (data[TIME_OFFSET] & 0xffL) << 24
+                | (data[TIME_OFFSET + 1] & 0xffL) << 16
+                | (data[TIME_OFFSET + 2] & 0xffL) << 8
+                | (data[TIME_OFFSET + 3] & 0xffL);
+        // stay within the same day
+        time = (time + hundredths) % HUNDREDTHS_PER_DAY;
+        data[TIME_OFFSET] = (byte)(time >>> 24);
+        data[TIME_OFFSET + 1] = (byte)(time >>> 16);
+        data[TIME_OFFSET + 2] = (byte)(time >>> 8);
+        data[TIME_OFFSET + 3] = (byte)time;
+        return new SmfRecord(data);
+    }
+
+    /**
+     * Recently written records that can be chosen to be duplicated.
+     * Records with a SMF time more than the skew before the latest
+     * record are removed.
+     */
+    private static class Candidates
+    {
+        Candidates(int skewMinutes)
+        {
+            this.skewMinutes = skewMinutes;
+        }
+
+        private final int skewMinutes;
+        private final SmfRecord[] records = new SmfRecord[MAX_CANDIDATES];
+        private final LocalDateTime[] times = new LocalDateTime[MAX_CANDIDATES];
+        private int first = 0;
+        private int count = 0;
+        private LocalDateTime latest = LocalDateTime.MIN;
+
+        void add(SmfRecord record)
+        {
+            LocalDateTime time = record.smfDateTime();
+            if (time.isAfter(latest))
+            {
+                latest = time;
+                LocalDateTime oldest = latest.minusMinutes(skewMinutes);
+                while (count > 0 && times[first].isBefore(oldest))
+                {
+                    records[first] = null;
+                    first = (first + 1) % MAX_CANDIDATES;
+                    count--;
+                }
+            }
+            if (count == MAX_CANDIDATES)
+            {
+                first = (first + 1) % MAX_CANDIDATES;
+                count--;
+            }
+            int slot = (first + count) % MAX_CANDIDATES;
+            records[slot] = record;
+            times[slot] = time;
+            count++;
+        }
+
+        SmfRecord choose(Random random)
+        {
+            return records[(first + random.nextInt(count)) % MAX_CANDIDATES];
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.smfreports;
+
+/**
+ * The hash algorithms available to identify duplicate records.
+ */
+enum HashAlgorithm
+{
+    /**
+     * The first 128 bits of a SHA-1 hash.
+     */
+    SHA1
+    {
+        @Override
+        RecordHasher newHasher()
+        {
+            return new Sha1Hasher();
+        }
+    },
+    
+    /**
+     * MurmurHash3 x64 128 bit. Not cryptographically secure, but we are
+     * not trying to detect deliberately constructed collisions and it is
+     * much faster than SHA-1.
+     */
+    MURMUR3
+    {
+        @Override
+        RecordHasher newHasher()
+        {
+            return new Murmur3Hasher();
+        }
+    };
+
+    /**
+     * Create a hasher for this algorithm.
+     * @return a new RecordHasher
+     */
+    abstract RecordHasher newHasher();
+
+    /**
+     * Get the algorithm for a name specified on the command line.
+     * @param name the algorithm name, case insensitive
+     * @return the HashAlgorithm
+     * @throws IllegalArgumentException if the name is not recognized
+     */
+    static HashAlgorithm fromName(String name)
+    {
+        return HashAlgorithm.valueOf(name.toUpperCase());
+    }
+}
@@ -0,0 +1,155 @@
+package com.smfreports;
+
+import java.io.*;
+import java.util.*;
+
+import com.blackhillsoftware.smf.SmfRecord;
+import com.blackhillsoftware.smf.SmfRecordReader;
+
+/**
+ * Compare the speed of the hash algorithms available for duplicate
+ * detection using real SMF data.
+ * <p>
+ * Records are read into memory first, so the timings measure only the
+ * hash calculation. Each algorithm is run several times to allow the
+ * JIT compiler to optimize the code before the measured runs.
+ * Results are reported for all records, and separately for SMF types
+ * 30, 70 and 110 which have quite different record sizes.
+ */
+public class HashBenchmark
+{
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+    private static final int[] RECORD_TYPES = { 30, 70, 110 };
+
+    // results are accumulated here so the JIT can't eliminate the work
+    private static long sink = 0;
+
+    private static void printUsage() {
+        System.out.println("Usage: HashBenchmark [--limit N] <input-file> [input-file2 ...]");
+        System.out.println("");
+        System.out.println("Compare hash algorithm speed using records from the input file(s).");
+        System.out.println("");
+        System.out.println("  --limit N    Maximum number of records to read into memory.");
+        System.out.println("               Default: 1000000");
+        System.out.println("  input-file   File containing SMF records. Binary data, RECFM=U or V[B]");
+        System.out.println("               including RDW.");
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0 || args[0].equals("--help") || args[0].equals("-h"))
+        {
+            printUsage();
+            System.exit(0);
+        }
+
+        int limit = 1000000;
+        List<String> names = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                if (args[i].equals("--limit"))
+                {
+                    limit = Integer.parseInt(args[++i]);
+                }
+                else
+                {
+                    names.add(args[i]);
+                }
+            }
+        }
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+        {
+            names.clear();
+        }
+        if (names.isEmpty())
+        {
+            printUsage();
+            System.exit(0);
+        }
+
+        // Read the records, keeping all records plus the types of interest
+        Map<String, List<byte[]>> recordGroups = new LinkedHashMap<>();
+        recordGroups.put("All", new ArrayList<>());
+        for (int type : RECORD_TYPES)
+        {
+            recordGroups.put("Type " + type, new ArrayList<>());
+        }
+
+        int count = 0;
+        for (String name : names)
+        {
+            try (SmfRecordReader reader = SmfRecordReader.fromName(name))
+            {
+                for (SmfRecord record : reader)
+                {
+                    if (count++ >= limit) break;
+                    recordGroups.get("All").add(record.getBytes());
+                    List<byte[]> typeGroup = recordGroups.get("Type " + record.recordType());
+                    if (typeGroup != null)
+                    {
+                        typeGroup.add(record.getBytes());
+                    }
+                }
+            }
+        }
+
+        System.out.format("%-10s %-8s %12s %12s %12s %14s%n",
+                "Records",
+                "Hash",
+                "Count",
+                "Avg Length",
+                "MB/sec",
+                "Records/sec");
+
+        for (Map.Entry<String, List<byte[]>> group : recordGroups.entrySet())
+        {
+            List<byte[]> records = group.getValue();
+            if (records.isEmpty()) continue;
+
+            long bytes = 0;
+            for (byte[] record : records)
+            {
+                bytes += record.length;
+            }
+
+            System.out.println();
+            for (HashAlgorithm algorithm : HashAlgorithm.values())
+            {
+                RecordHasher hasher = algorithm.newHasher();
+                for (int i = 0; i < WARMUP_RUNS; i++)
+                {
+                    sink ^= hashAll(hasher, records);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < MEASURED_RUNS; i++)
+                {
+                    sink ^= hashAll(hasher, records);
+                }
+                double seconds = (System.nanoTime() - start) / 1e9 / MEASURED_RUNS;
+
+                System.out.format("%-10s %-8s %,12d %,12d %,12.1f %,14.0f%n",
+                        group.getKey(),
+                        algorithm.name().toLowerCase(),
+                        records.size(),
+                        bytes / records.size(),
+                        bytes / seconds / (1024 * 1024),
+                        records.size() / seconds);
+            }
+        }
+    }
+
+    private static long hashAll(RecordHasher hasher, List<byte[]> records)
+    {
+        long[] hash = new long[2];
+        long check = 0;
+        for (byte[] record : records)
+        {
+            hasher.hash(record, hash, 0);
+            check ^= hash[0] ^ hash[1];
+        }
+        return check;
+    }
+}
@@ -0,0 +1,114 @@
+package com.smfreports;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * MurmurHash3 x64 128 bit hash with a seed of 0, following
+ * Austin Appleby's public domain reference implementation.
+ * <p>
+ * The high order value is h1 and the low order value is h2, so the
+ * result matches the first and second 8 bytes (little endian) of 
+ * the reference implementation output.
+ */
+class Murmur3Hasher implements RecordHasher
+{
+    private static final VarHandle LONG_LE = 
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    @Override
+    public void hash(byte[] data, long[] result, int index)
+    {
+        int length = data.length;
+        int blocks = length >>> 4;
+        long h1 = 0;
+        long h2 = 0;
+
+        for (int i = 0; i < blocks; i++)
+        {
+            long k1 = (long) LONG_LE.get(data, i << 4);
+            long k2 = (long) LONG_LE.get(data, (i << 4) + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        // remaining 0-15 bytes
+        int tail = blocks << 4;
+        long k1 = 0;
+        long k2 = 0;
+        switch (length & 15)
+        {
+            case 15: k2 ^= (data[tail + 14] & 0xffL) << 48; // fall through
+            case 14: k2 ^= (data[tail + 13] & 0xffL) << 40; // fall through
+            case 13: k2 ^= (data[tail + 12] & 0xffL) << 32; // fall through
+            case 12: k2 ^= (data[tail + 11] & 0xffL) << 24; // fall through
+            case 11: k2 ^= (data[tail + 10] & 0xffL) << 16; // fall through
+            case 10: k2 ^= (data[tail + 9] & 0xffL) << 8;   // fall through
+            case 9:  k2 ^= (data[tail + 8] & 0xffL);
+                     h2 ^= mixK2(k2);                       // fall through
+            case 8:  k1 ^= (data[tail + 7] & 0xffL) << 56;  // fall through
+            case 7:  k1 ^= (data[tail + 6] & 0xffL) << 48;  // fall through
+            case 6:  k1 ^= (data[tail + 5] & 0xffL) << 40;  // fall through
+            case 5:  k1 ^= (data[tail + 4] & 0xffL) << 32;  // fall through
+            case 4:  k1 ^= (data[tail + 3] & 0xffL) << 24;  // fall through
+            case 3:  k1 ^= (data[tail + 2] & 0xffL) << 16;  // fall through
+            case 2:  k1 ^= (data[tail + 1] & 0xffL) << 8;   // fall through
+            case 1:  k1 ^= (data[tail] & 0xffL);
+                     h1 ^= mixK1(k1);
+                     break;
+            default:
+                break;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        result[index] = h1;
+        result[index + 1] = h2;
+    }
+
+    private static long mixK1(long k1)
+    {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2)
+    {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix64(long k)
+    {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,182 @@
+package com.smfreports;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.blackhillsoftware.smf.SmfRecord;
+import com.blackhillsoftware.smf.SmfRecordReader;
+
+/**
+ * Read SMF records and calculate hashes using a pool of worker threads.
+ * <p>
+ * A reader thread reads records from the SmfRecordReader into batches
+ * and submits each batch to the pool to be hashed. Batches are returned
+ * by {@link #next()} in the same order as the records were read, so the
+ * caller sees exactly the same sequence as it would reading the records
+ * itself.
+ * <p>
+ * The number of batches in flight is limited, so memory use is bounded
+ * if the caller processes records more slowly than they can be read.
+ */
+class ParallelHasher implements AutoCloseable
+{
+    private static final int BATCH_SIZE = 1000;
+
+    // marks the end of the input in the queue
+    private static final Future<HashedBatch> END = CompletableFuture.completedFuture(null);
+
+    private final ExecutorService hashPool;
+    private final ThreadLocal<RecordHasher> hashers;
+    private final BlockingQueue<Future<HashedBatch>> queue;
+    private final Thread readerThread;
+    private boolean finished = false;
+
+    /**
+     * Start reading and hashing records.
+     * @param reader the source of the records
+     * @param algorithm the hash algorithm
+     * @param threads the number of threads to use for hashing
+     */
+    ParallelHasher(SmfRecordReader reader, HashAlgorithm algorithm, int threads)
+    {
+        hashers = ThreadLocal.withInitial(algorithm::newHasher);
+        hashPool = Executors.newFixedThreadPool(threads, runnable ->
+            {
+                Thread thread = new Thread(runnable, "hash");
+                thread.setDaemon(true);
+                return thread;
+            });
+        queue = new ArrayBlockingQueue<>(threads * 4);
+        readerThread = new Thread(() -> readRecords(reader), "reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    /**
+     * Get the next batch of records and hashes in input order.
+     * @return the next batch, or null at the end of the input
+     * @throws IOException if an error occurred reading the input
+     */
+    HashedBatch next() throws IOException
+    {
+        if (finished) return null;
+        try
+        {
+            Future<HashedBatch> batch = queue.take();
+            if (batch == END)
+            {
+                finished = true;
+                return null;
+            }
+            return batch.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Stop the reader and hashing threads.
+     */
+    @Override
+    public void close()
+    {
+        readerThread.interrupt();
+        hashPool.shutdownNow();
+    }
+
+    private void readRecords(SmfRecordReader reader)
+    {
+        Throwable failure = null;
+        try
+        {
+            List<SmfRecord> records = new ArrayList<>(BATCH_SIZE);
+            for (SmfRecord record : reader)
+            {
+                records.add(record);
+                if (records.size() == BATCH_SIZE)
+                {
+                    submit(records);
+                    records = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!records.isEmpty())
+            {
+                submit(records);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // closed by the consumer, stop reading
+            return;
+        }
+        catch (Throwable e)
+        {
+            // including Errors e.g. OutOfMemoryError, otherwise the
+            // consumer would wait for END forever
+            failure = e;
+        }
+
+        try
+        {
+            if (failure != null)
+            {
+                // pass the error to the consumer after the batches
+                // that were read successfully
+                queue.put(CompletableFuture.failedFuture(failure));
+            }
+            queue.put(END);
+        }
+        catch (InterruptedException e)
+        {
+            // closed by the consumer
+        }
+    }
+
+    private void submit(List<SmfRecord> records) throws InterruptedException
+    {
+        queue.put(hashPool.submit(() -> hash(records)));
+    }
+
+    private HashedBatch hash(List<SmfRecord> records)
+    {
+        RecordHasher hasher = hashers.get();
+        long[] hashes = new long[records.size() * 2];
+        for (int i = 0; i < records.size(); i++)
+        {
+            hasher.hash(records.get(i).getBytes(), hashes, i * 2);
+        }
+        return new HashedBatch(records, hashes);
+    }
+
+    /**
+     * A batch of records with the hash for each record.
+     */
+    static class HashedBatch
+    {
+        private final List<SmfRecord> records;
+        private final long[] hashes;
+
+        private HashedBatch(List<SmfRecord> records, long[] hashes)
+        {
+            this.records = records;
+            this.hashes = hashes;
+        }
+
+        int size()                  { return records.size(); }
+        SmfRecord record(int index) { return records.get(index); }
+        long high(int index)        { return hashes[index * 2]; }
+        long low(int index)         { return hashes[index * 2 + 1]; }
+    }
+}
@@ -0,0 +1,21 @@
+package com.smfreports;
+
+/**
+ * Calculate a 128 bit hash of SMF record data.
+ * <p>
+ * Implementations calculate the hash without creating objects for
+ * each record. Instances are not thread safe, each thread needs its
+ * own RecordHasher.
+ */
+interface RecordHasher
+{
+    /**
+     * Calculate the hash of the data. The hash is stored in result[index]
+     * (high order 64 bits) and result[index + 1] (low order 64 bits).
+     *
+     * @param data the record data
+     * @param result the array to receive the hash
+     * @param index the position in the array for the high order 64 bits
+     */
+    void hash(byte[] data, long[] result, int index);
+}
@@ -0,0 +1,134 @@
+package com.smfreports;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Keep copies of records in a temporary file so that a record can be
+ * compared byte for byte with a record seen earlier.
+ * <p>
+ * Records are appended to the file and identified by their offset.
+ * The file is deleted when the store is closed.
+ */
+class RecordStore implements Closeable
+{
+    private final FileChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(1024 * 1024);
+    private ByteBuffer readBuffer = ByteBuffer.allocate(32768);
+    private long size = 0;
+    private long written = 0;
+
+    /**
+     * Create a RecordStore in the default temporary file directory.
+     * @throws IOException if the file cannot be created
+     */
+    RecordStore() throws IOException
+    {
+        Path path = Files.createTempFile("smfdedup", ".tmp");
+        channel = FileChannel.open(path, 
+                StandardOpenOption.READ, 
+                StandardOpenOption.WRITE, 
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * The offset the next record will be written at.
+     * @return the offset of the next record 
+     */
+    long nextOffset()
+    {
+        return size;
+    }
+
+    /**
+     * Add a record to the store.
+     * @param data the record data
+     * @return the offset of the record in the store
+     * @throws IOException if an error occurs writing the file 
+     */
+    long add(byte[] data) throws IOException
+    {
+        long offset = size;
+        if (writeBuffer.remaining() < data.length + 4)
+        {
+            flush();
+        }
+        if (writeBuffer.remaining() < data.length + 4)
+        {
+            // larger than the buffer, write directly
+            ByteBuffer record = ByteBuffer.allocate(data.length + 4);
+            record.putInt(data.length).put(data).flip();
+            writeFully(record);
+        }
+        else
+        {
+            writeBuffer.putInt(data.length).put(data);
+        }
+        size += data.length + 4;
+        return offset;
+    }
+
+    /**
+     * Compare data with a record in the store.
+     * @param offset the offset of the stored record
+     * @param data the data to compare
+     * @return true if the stored record has the same length and content
+     * @throws IOException if an error occurs reading the file
+     */
+    boolean matches(long offset, byte[] data) throws IOException
+    {
+        if (offset + 4 + data.length > written)
+        {
+            flush();
+        }
+        if (readBuffer.capacity() < data.length + 4)
+        {
+            readBuffer = ByteBuffer.allocate(data.length + 4);
+        }
+        readBuffer.clear().limit(4);
+        readFully(offset);
+        if (readBuffer.getInt(0) != data.length)
+        {
+            return false;
+        }
+        readBuffer.clear().limit(data.length + 4);
+        readFully(offset);
+        return Arrays.equals(readBuffer.array(), 4, data.length + 4, data, 0, data.length);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    private void flush() throws IOException
+    {
+        writeBuffer.flip();
+        writeFully(writeBuffer);
+        writeBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            written += channel.write(buffer, written);
+        }
+    }
+
+    private void readFully(long offset) throws IOException
+    {
+        while (readBuffer.hasRemaining())
+        {
+            int count = channel.read(readBuffer, offset + readBuffer.position());
+            if (count < 0)
+            {
+                throw new EOFException("Unexpected end of record store");
+            }
+        }
+    }
+}
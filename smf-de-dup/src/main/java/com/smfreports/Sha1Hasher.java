@@ -0,0 +1,50 @@
+package com.smfreports;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A RecordHasher using the first 128 bits of a SHA-1 hash.
+ * <p>
+ * The hash is calculated into a buffer that is reused for every record.
+ */
+class Sha1Hasher implements RecordHasher
+{
+    private final MessageDigest sha1;
+    private final byte[] hash;
+    private final ByteBuffer hashBuffer;
+
+    Sha1Hasher()
+    {
+        try
+        {
+            sha1 = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java implementation is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+        hash = new byte[sha1.getDigestLength()];
+        hashBuffer = ByteBuffer.wrap(hash);
+    }
+
+    @Override
+    public void hash(byte[] data, long[] result, int index)
+    {
+        sha1.update(data);
+        try
+        {
+            sha1.digest(hash, 0, hash.length);
+        }
+        catch (DigestException e)
+        {
+            // only thrown if the buffer is too small
+            throw new IllegalStateException(e);
+        }
+        result[index] = hashBuffer.getLong(0);
+        result[index + 1] = hashBuffer.getLong(8);
+    }
+}
@@ -1,9 +1,7 @@
 package com.smfreports;
 
 import java.io.*;
-import java.nio.ByteBuffer;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Paths;
 import java.util.*;
 
 import com.blackhillsoftware.smf.SmfRecord;
@@ -13,16 +11,38 @@ import com.blackhillsoftware.smf.SmfRecordWriter;
 public class SmfDeDup
 {
     private static void printUsage() {
-        System.out.println("Usage: SmfDeDup <input-file> [ output-file [ dup-file ] ]");
+        System.out.println("Usage: SmfDeDup [options] <input-file> [ output-file [ dup-file ] ]");
         System.out.println("");
         System.out.println("Search for duplicates in input-file, and report duplicate record counts");
         System.out.println("by record type.");
         System.out.println("");
+        System.out.println("  --threads N  Calculate record hashes using N threads. Output is the");
+        System.out.println("               same as a single threaded run. Default: 1");
+        System.out.println("  --hash name  Hash algorithm used to identify duplicates:");
+        System.out.println("               murmur3 (default) or sha1.");
+        System.out.println("  --verify     Compare records byte for byte when the hash matches a");
+        System.out.println("               previous record. Unique records are copied to a");
+        System.out.println("               temporary file for the comparison.");
+        System.out.println("  --window N   Only compare records within N minutes of the latest SMF");
+        System.out.println("               time seen for the system. Hashes for older minutes are");
+        System.out.println("               discarded, so memory use depends on N rather than the");
+        System.out.println("               size of the input. Input should be roughly in time");
+        System.out.println("               order for each system. Default: 0, keep all hashes.");
+        System.out.println("  --index dir  Keep record hashes in directory dir, so records seen in");
+        System.out.println("               previous runs are also treated as duplicates. Hashes");
+        System.out.println("               from this run are added when it completes.");
+        System.out.println("               Every run using the index must use the same --hash.");
+        System.out.println("  --retain N   Keep hashes in the index for N days of SMF data.");
+        System.out.println("               Default: 0, keep all hashes.");
         System.out.println("  input-file   File containing SMF records. Binary data, RECFM=U or V[B]");
         System.out.println("               including RDW.");
         System.out.println("  output-file  Copy data to output-file with duplicates removed.");
         System.out.println("  dup-file     Write duplicate records to dup-file to allow further");
         System.out.println("               investigation. Can only be specified with output-file.");
+        System.out.println("");
+        System.out.println("Record hashes are kept outside the Java heap. If the hash table needs");
+        System.out.println("more memory than the default, increase it with the JVM option");
+        System.out.println("-XX:MaxDirectMemorySize e.g. -XX:MaxDirectMemorySize=8G");
     }
     
     private static void printWarning() {
@@ -35,68 +55,112 @@ public class SmfDeDup
         System.out.println("");
     }
     
-    public static void main(String[] args) throws IOException, NoSuchAlgorithmException
+    public static void main(String[] args) throws IOException
     {
         if (args.length == 0 || args[0].equals("--help") || args[0].equals("-h"))
         {
             printUsage();
             System.exit(0);
         }
-        printWarning();
-        
-        // We don't need a cryptographically secure hash, SHA-1 might be 
-        // faster than SHA-256 hashes and should be adequate to find duplicates
-        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
         
-        // Hashes will be stored as BigIntegers
-        Set<Digest> recordHashes = new HashSet<>();
+        int threads = 1;
+        HashAlgorithm algorithm = HashAlgorithm.MURMUR3;
+        boolean verify = false;
+        String indexName = null;
+        int retainDays = 0;
+        int windowMinutes = 0;
+        List<String> names = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--hash":
+                    algorithm = HashAlgorithm.fromName(args[++i]);
+                    break;
+                case "--verify":
+                    verify = true;
+                    break;
+                case "--window":
+                    windowMinutes = Integer.parseInt(args[++i]);
+                    break;
+                case "--index":
+                    indexName = args[++i];
+                    break;
+                case "--retain":
+                    retainDays = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    names.add(args[i]);
+                    break;
+                }
+            }
+        }
+        catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e)
+        {
+            names.clear();
+        }
+        if (names.isEmpty() || names.size() > 3 || threads < 1 || retainDays < 0 || windowMinutes < 0)
+        {
+            printUsage();
+            System.exit(0);
+        }
         
-        Map<Integer, RecordStats> duplicatesByType = new HashMap<>(); 
+        printWarning();
         
         // Open reader, and writer and dupwriter classes if provided.
         try (
-            SmfRecordReader reader = SmfRecordReader.fromName(args[0]);                
-            SmfRecordWriter writer = args.length > 1 ? SmfRecordWriter.fromName(args[1]) : null;
-            SmfRecordWriter dupwriter = args.length > 2 ? SmfRecordWriter.fromName(args[2]) : null;
+            SmfRecordReader reader = SmfRecordReader.fromName(names.get(0));                
+            SmfRecordWriter writer = names.size() > 1 ? SmfRecordWriter.fromName(names.get(1)) : null;
+            SmfRecordWriter dupwriter = names.size() > 2 ? SmfRecordWriter.fromName(names.get(2)) : null;
+            DuplicateDetector detector = new DuplicateDetector(verify, windowMinutes);
+            FingerprintIndex index = indexName != null ? new FingerprintIndex(Paths.get(indexName), algorithm, retainDays) : null;
             )        
         {
-            int in = 0;
-            int out = 0;
-            int dups = 0;
-            for (SmfRecord record : reader)
+            if (index != null)
             {
-                in++;
-                if (recordHashes.add(new Digest(sha1.digest(record.getBytes()))))
+                System.out.format("Loaded %,d hashes from index.%n", index.load(detector));
+            }
+            
+            DeDup dedup = new DeDup(writer, dupwriter, detector, index);
+            
+            if (threads > 1)
+            {
+                // Hash records on multiple threads. Batches are returned in 
+                // input order, so the output is the same as a single 
+                // threaded run.
+                try (ParallelHasher hasher = new ParallelHasher(reader, algorithm, threads))
                 {
-                    // new hash, not a duplicate
-                    if (writer != null) // if we have an output file for deduplicated records
+                    ParallelHasher.HashedBatch batch;
+                    while ((batch = hasher.next()) != null)
                     {
-                        out++;
-                        writer.write(record);
+                        for (int i = 0; i < batch.size(); i++)
+                        {
+                            dedup.process(batch.record(i), batch.high(i), batch.low(i));
+                        }
                     }
                 }
-                else
+            }
+            else
+            {
+                RecordHasher hasher = algorithm.newHasher();
+                long[] hash = new long[2];
+                for (SmfRecord record : reader)
                 {
-                    // hash was already in Set i.e. duplicate record
-                    dups++;
-                    if (dupwriter != null) // if we have an output file for duplicate records
-                    {
-                        dupwriter.write(record);
-                    }
-                    duplicatesByType
-                        .computeIfAbsent(record.recordType(), key -> new RecordStats(record.recordType()))
-                        .count(record);
+                    hasher.hash(record.getBytes(), hash, 0);
+                    dedup.process(record, hash[0], hash[1]);
                 }
             }
-            System.out.format("Finished, %d records in, %d records out, %d duplicates.%n", in, out, dups);
             
-            if (dups > 0)
+            if (index != null)
             {
-                System.out.format("%nDuplicates by type:%n");
-                duplicatesByType.values().stream()
-                    .sorted(Comparator.comparing(RecordStats::getRecordtype))
-                    .forEachOrdered(entry -> System.out.format("%4d : %8d%n", entry.getRecordtype(), entry.getCount()));
+                index.commit();
             }
+            dedup.report();
         }
 
         catch (Exception e)
@@ -106,6 +170,91 @@ public class SmfDeDup
         }
     }
     
+    /**
+     * Check records for duplicates, write the output files and
+     * keep the statistics.
+     */
+    private static class DeDup
+    {
+        DeDup(SmfRecordWriter writer, SmfRecordWriter dupwriter, 
+                DuplicateDetector detector, FingerprintIndex index)
+        {
+            this.writer = writer;
+            this.dupwriter = dupwriter;
+            this.detector = detector;
+            this.index = index;
+        }
+        
+        private SmfRecordWriter writer;
+        private SmfRecordWriter dupwriter;
+        // Record hashes are kept in an off-heap table so we don't
+        // create objects for each record.
+        private DuplicateDetector detector;
+        private FingerprintIndex index;
+        
+        private Map<Integer, RecordStats> duplicatesByType = new HashMap<>(); 
+        
+        private int in = 0;
+        private int out = 0;
+        private int dups = 0;
+        
+        void process(SmfRecord record, long hashHigh, long hashLow) throws IOException
+        {
+            in++;
+            if (!detector.isDuplicate(record, hashHigh, hashLow))
+            {
+                // new hash, not a duplicate
+                if (index != null)
+                {
+                    index.add(record.smfDate(), hashHigh, hashLow);
+                }
+                if (writer != null) // if we have an output file for deduplicated records
+                {
+                    out++;
+                    writer.write(record);
+                }
+            }
+            else
+            {
+                // hash was already in Set i.e. duplicate record
+                dups++;
+                if (dupwriter != null) // if we have an output file for duplicate records
+                {
+                    dupwriter.write(record);
+                }
+                duplicatesByType
+                    .computeIfAbsent(record.recordType(), key -> new RecordStats(record.recordType()))
+                    .count(record);
+            }
+        }
+        
+        void report()
+        {
+            System.out.format("Finished, %d records in, %d records out, %d duplicates.%n", in, out, dups);
+            System.out.format("Hash table: %,d entries, %,d MB.%n", 
+                    detector.size(), detector.tableBytes() / (1024 * 1024));
+            if (detector.collisions() > 0)
+            {
+                System.out.format("%d records had the same hash as a different record.%n", 
+                        detector.collisions());
+            }
+            if (detector.lateRecords() > 0)
+            {
+                System.out.format("%d records were older than the window and were not checked"
+                        + " for duplicates.%n", 
+                        detector.lateRecords());
+            }
+            
+            if (dups > 0)
+            {
+                System.out.format("%nDuplicates by type:%n");
+                duplicatesByType.values().stream()
+                    .sorted(Comparator.comparing(RecordStats::getRecordtype))
+                    .forEachOrdered(entry -> System.out.format("%4d : %8d%n", entry.getRecordtype(), entry.getCount()));
+            }
+        }
+    }
+    
     private static class RecordStats
     {
         RecordStats(int recordtype)
@@ -130,40 +279,4 @@ public class SmfDeDup
         }
     }
     
-    /**
-     * A class to store hashes in the set, providing hashcode and equals implementations 
-     */
-    private static class Digest
-    {
-        public Digest(byte[] digest)
-        {
-            this.digest = digest;
-            // for a SHA-1 hash, the first 4 bytes is probably an adequate 
-            // value to return for hashCode
-            hashCode = ByteBuffer.wrap(digest).getInt();
-        }
-        
-        @Override
-        public int hashCode() 
-        {
-            return hashCode;
-        }
-        
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            Digest other = (Digest) obj;
-            return Arrays.equals(this.digest, other.digest);    
-        }
-        
-        private byte[] digest;
-        private int hashCode;
-        
-    }
-    
 }
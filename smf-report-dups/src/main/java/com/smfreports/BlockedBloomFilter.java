@@ -0,0 +1,97 @@
+package com.smfreports;
+
+/**
+ * A blocked Bloom filter for 128 bit record hashes.
+ * <p>
+ * The filter is divided into 512 bit blocks. The high order 64 bits
+ * of the hash select a block, and all the bits for a hash are set in
+ * that block using the low order 64 bits, so each check touches one
+ * cache line. Blocked filters have a slightly higher false positive
+ * rate than a standard Bloom filter of the same size.
+ * <p>
+ * A false positive means a unique record is counted as a duplicate.
+ * Duplicates are never counted as unique records.
+ */
+class BlockedBloomFilter
+{
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_LONGS = BLOCK_BITS / 64;
+    private static final int MAX_HASH_COUNT = 16;
+
+    private final long[] bits;
+    private final long blockCount;
+    private final int hashCount;
+
+    /**
+     * Create a filter sized for the expected number of entries.
+     * @param expectedEntries the expected number of unique records
+     * @param falsePositiveRate the target false positive rate at the
+     * expected number of entries, e.g. 0.01
+     */
+    BlockedBloomFilter(long expectedEntries, double falsePositiveRate)
+    {
+        if (expectedEntries < 1)
+        {
+            throw new IllegalArgumentException("Expected entries must be greater than 0: " + expectedEntries);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+        {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+
+        double bitsPerEntry = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        blockCount = Math.max(1, (long)Math.ceil(expectedEntries * bitsPerEntry / BLOCK_BITS));
+        if (blockCount * BLOCK_LONGS > Integer.MAX_VALUE - 8)
+        {
+            throw new IllegalArgumentException("Filter is too large: " + blockCount * BLOCK_BITS + " bits");
+        }
+        hashCount = (int)Math.max(1, Math.min(MAX_HASH_COUNT, Math.round(bitsPerEntry * Math.log(2))));
+        bits = new long[(int)(blockCount * BLOCK_LONGS)];
+    }
+
+    /**
+     * Add a hash to the filter
+     * @param high the high order 64 bits of the hash
+     * @param low the low order 64 bits of the hash
+     * @return true if the hash was added, false if it was probably
+     * already in the filter
+     */
+    boolean add(long high, long low)
+    {
+        int block = (int)((high >>> 1) % blockCount) * BLOCK_LONGS;
+        int h1 = (int)low;
+        // an odd increment gives distinct bits within the block
+        int h2 = (int)(low >>> 32) | 1;
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++)
+        {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            int index = block + (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits[index] & mask) == 0)
+            {
+                bits[index] |= mask;
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * The number of hash functions
+     * @return the number of bits set for each entry
+     */
+    int hashCount()
+    {
+        return hashCount;
+    }
+
+    /**
+     * The amount of memory allocated for the filter
+     * @return the filter size in bytes
+     */
+    long tableBytes()
+    {
+        return (long)bits.length * 8;
+    }
+}
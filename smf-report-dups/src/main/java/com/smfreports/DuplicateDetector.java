@@ -0,0 +1,156 @@
+package com.smfreports;
+
+import java.io.*;
+
+/**
+ * Identify duplicate records using a 128 bit hash of the record data.
+ * <p>
+ * Optionally, records can be verified: when a hash matches a previous
+ * record the data is compared byte for byte with the previous record.
+ * Unique records are copied to a temporary file for the comparison.
+ * If the data is different, the record is treated as unique and
+ * counted as a hash collision. Only one record can be kept for each 
+ * hash, so duplicates of the second record would not be detected.
+ * <p>
+ * Hashes loaded from a previous run with {@link #addKnown} have no
+ * record data available, so matches with those hashes are treated as
+ * duplicates without verification.
+ * <p>
+ * In approximate mode hashes are kept in a Bloom filter instead of a 
+ * hash table. The filter uses much less memory, but some unique records
+ * will be counted as duplicates.
+ */
+class DuplicateDetector implements Closeable
+{
+    // record store offset for hashes without record data
+    private static final long NOT_STORED = Long.MAX_VALUE;
+
+    private final FingerprintSet recordHashes;
+    private final RecordStore recordStore;
+    private final BlockedBloomFilter approximateHashes;
+    private long collisions = 0;
+
+    /**
+     * Create a DuplicateDetector
+     * @param verify true to compare the data when hashes match
+     * @throws IOException if the temporary file for verification 
+     * cannot be created
+     */
+    DuplicateDetector(boolean verify) throws IOException
+    {
+        recordStore = verify ? new RecordStore() : null;
+        // If we are verifying duplicates the table also holds the 
+        // offset of each record in the record store.
+        recordHashes = new FingerprintSet(1 << 20, verify);
+        approximateHashes = null;
+    }
+
+    /**
+     * Create a DuplicateDetector in approximate mode
+     * @param expectedRecords the expected number of unique records
+     * @param falsePositiveRate the target rate of unique records 
+     * counted as duplicates at the expected number of records
+     */
+    DuplicateDetector(long expectedRecords, double falsePositiveRate)
+    {
+        recordStore = null;
+        recordHashes = null;
+        approximateHashes = new BlockedBloomFilter(expectedRecords, falsePositiveRate);
+    }
+
+    /**
+     * Check whether a record is a duplicate of a record seen previously.
+     * @param data the record data
+     * @param hashHigh the high order 64 bits of the record hash
+     * @param hashLow the low order 64 bits of the record hash
+     * @return true if the record is a duplicate
+     * @throws IOException if an error occurs reading or writing the 
+     * verification file
+     */
+    boolean isDuplicate(byte[] data, long hashHigh, long hashLow) throws IOException
+    {
+        if (approximateHashes != null)
+        {
+            return !approximateHashes.add(hashHigh, hashLow);
+        }
+        if (recordStore == null)
+        {
+            return !recordHashes.add(hashHigh, hashLow);
+        }
+
+        long offset = recordHashes.putIfAbsent(hashHigh, hashLow, recordStore.nextOffset());
+        if (offset == FingerprintSet.ABSENT)
+        {
+            recordStore.add(data);
+            return false;
+        }
+        if (offset == NOT_STORED || recordStore.matches(offset, data))
+        {
+            return true;
+        }
+        collisions++;
+        return false;
+    }
+
+    /**
+     * Add the hash of a record seen in a previous run. Records with this
+     * hash will be treated as duplicates.
+     * @param hashHigh the high order 64 bits of the record hash
+     * @param hashLow the low order 64 bits of the record hash
+     */
+    void addKnown(long hashHigh, long hashLow)
+    {
+        if (approximateHashes != null)
+        {
+            approximateHashes.add(hashHigh, hashLow);
+            return;
+        }
+        recordHashes.putIfAbsent(hashHigh, hashLow, NOT_STORED);
+    }
+
+    /**
+     * The number of records that had the same hash as a different record.
+     * Only counted if records are verified.
+     * @return the number of hash collisions
+     */
+    long collisions()
+    {
+        return collisions;
+    }
+
+    /**
+     * Whether duplicates are identified approximately
+     * @return true if in approximate mode
+     */
+    boolean isApproximate()
+    {
+        return approximateHashes != null;
+    }
+
+    /**
+     * The number of unique hashes. Not available in approximate mode.
+     * @return the number of entries in the hash table
+     */
+    long size()
+    {
+        return recordHashes.size();
+    }
+
+    /**
+     * The amount of memory allocated for the hash table or Bloom filter
+     * @return the table size in bytes
+     */
+    long tableBytes()
+    {
+        return approximateHashes != null ? approximateHashes.tableBytes() : recordHashes.tableBytes();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (recordStore != null)
+        {
+            recordStore.close();
+        }
+    }
+}
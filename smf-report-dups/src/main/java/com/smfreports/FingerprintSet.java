@@ -0,0 +1,252 @@
+package com.smfreports;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A set of 128 bit fingerprints stored in an open addressing hash table
+ * outside the Java heap.
+ * <p>
+ * Each entry occupies 16 bytes in a direct ByteBuffer. A HashSet entry
+ * holding a digest object, byte array and HashMap node needs more than
+ * 100 bytes on the heap. No objects are created when entries are added,
+ * so the heap does not need to grow with the number of records.
+ * <p>
+ * Optionally a 64 bit value can be kept with each fingerprint, 
+ * increasing the entry size to 24 bytes.
+ * <p>
+ * The table doubles in size when it passes the load factor. During a
+ * resize the old and new tables exist at the same time, so peak memory
+ * use is 3 times the size of the old table.
+ * <p>
+ * Direct memory is limited by the -XX:MaxDirectMemorySize JVM option,
+ * which defaults to the maximum heap size.
+ */
+class FingerprintSet
+{
+    /**
+     * Returned by putIfAbsent when the fingerprint was not in the set
+     */
+    static final long ABSENT = -1;
+
+    // ByteBuffers are indexed by int, so the table is split into
+    // buffers of 2^26 slots (1 or 1.5 GB)
+    private static final int SLOTS_PER_BUFFER_SHIFT = 26;
+    private static final long SLOTS_PER_BUFFER_MASK = (1L << SLOTS_PER_BUFFER_SHIFT) - 1;
+
+    private static final double LOAD_FACTOR = 0.7;
+
+    private final int slotSize;
+    private ByteBuffer[] buffers;
+    private long capacity; // number of slots, a power of 2
+    private long mask;
+    private long resizeThreshold;
+    private long size = 0;
+
+    // An all zero fingerprint marks an empty slot, so we keep track
+    // of that value separately.
+    private boolean containsZero = false;
+    private long zeroValue;
+
+    /**
+     * Create a FingerprintSet with a default initial capacity of 1M entries.
+     */
+    FingerprintSet()
+    {
+        this(1 << 20, false);
+    }
+
+    /**
+     * Create a FingerprintSet
+     * @param initialCapacity the initial number of slots, rounded up to a power of 2
+     * @param withValues true to keep a value with each fingerprint
+     */
+    FingerprintSet(long initialCapacity, boolean withValues)
+    {
+        slotSize = withValues ? 24 : 16;
+        allocate(Long.highestOneBit(Math.max(initialCapacity - 1, 1)) << 1);
+    }
+
+    /**
+     * Add a fingerprint to the set
+     * @param high the high order 64 bits of the fingerprint
+     * @param low the low order 64 bits of the fingerprint
+     * @return true if the fingerprint was added, false if it was already in the set
+     */
+    boolean add(long high, long low)
+    {
+        return putIfAbsent(high, low, 0) == ABSENT;
+    }
+
+    /**
+     * Add a fingerprint and value to the set if the fingerprint is not
+     * already present.
+     * @param high the high order 64 bits of the fingerprint
+     * @param low the low order 64 bits of the fingerprint
+     * @param value the value to keep with the fingerprint. Only kept if the 
+     * set was created with values, and must not be negative. 
+     * @return the value already associated with the fingerprint, or ABSENT
+     * if the fingerprint was added.
+     */
+    long putIfAbsent(long high, long low, long value)
+    {
+        if (high == 0 && low == 0)
+        {
+            if (containsZero) return zeroValue;
+            containsZero = true;
+            zeroValue = value;
+            size++;
+            return ABSENT;
+        }
+
+        long slot = slotFor(high);
+        while (true)
+        {
+            long slotHigh = getHigh(slot);
+            long slotLow = getLow(slot);
+            if (slotHigh == 0 && slotLow == 0)
+            {
+                put(slot, high, low, value);
+                if (++size > resizeThreshold)
+                {
+                    resize();
+                }
+                return ABSENT;
+            }
+            if (slotHigh == high && slotLow == low)
+            {
+                return getValue(slot);
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Test whether a fingerprint is in the set
+     * @param high the high order 64 bits of the fingerprint
+     * @param low the low order 64 bits of the fingerprint
+     * @return true if the fingerprint is in the set
+     */
+    boolean contains(long high, long low)
+    {
+        if (high == 0 && low == 0)
+        {
+            return containsZero;
+        }
+
+        long slot = slotFor(high);
+        while (true)
+        {
+            long slotHigh = getHigh(slot);
+            long slotLow = getLow(slot);
+            if (slotHigh == 0 && slotLow == 0)
+            {
+                return false;
+            }
+            if (slotHigh == high && slotLow == low)
+            {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * The number of fingerprints in the set
+     * @return the number of entries
+     */
+    long size()
+    {
+        return size;
+    }
+
+    /**
+     * The amount of memory allocated for the table
+     * @return the table size in bytes
+     */
+    long tableBytes()
+    {
+        return capacity * slotSize;
+    }
+
+    private long slotFor(long high)
+    {
+        // Fingerprints should already be well distributed, but mix the bits
+        // anyway so that a poor fingerprint doesn't cause long probe sequences
+        long h = high * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 32)) & mask;
+    }
+
+    private long getHigh(long slot)
+    {
+        return buffers[(int)(slot >>> SLOTS_PER_BUFFER_SHIFT)]
+                .getLong((int)(slot & SLOTS_PER_BUFFER_MASK) * slotSize);
+    }
+
+    private long getLow(long slot)
+    {
+        return buffers[(int)(slot >>> SLOTS_PER_BUFFER_SHIFT)]
+                .getLong((int)(slot & SLOTS_PER_BUFFER_MASK) * slotSize + 8);
+    }
+
+    private long getValue(long slot)
+    {
+        if (slotSize == 16) return 0;
+        return buffers[(int)(slot >>> SLOTS_PER_BUFFER_SHIFT)]
+                .getLong((int)(slot & SLOTS_PER_BUFFER_MASK) * slotSize + 16);
+    }
+
+    private void put(long slot, long high, long low, long value)
+    {
+        ByteBuffer buffer = buffers[(int)(slot >>> SLOTS_PER_BUFFER_SHIFT)];
+        int offset = (int)(slot & SLOTS_PER_BUFFER_MASK) * slotSize;
+        buffer.putLong(offset, high);
+        buffer.putLong(offset + 8, low);
+        if (slotSize > 16)
+        {
+            buffer.putLong(offset + 16, value);
+        }
+    }
+
+    private void allocate(long newCapacity)
+    {
+        long slotsPerBuffer = Math.min(newCapacity, 1L << SLOTS_PER_BUFFER_SHIFT);
+        int bufferCount = (int)(newCapacity / slotsPerBuffer);
+
+        // allocateDirect returns zeroed memory, i.e. all slots are empty
+        buffers = new ByteBuffer[bufferCount];
+        for (int i = 0; i < bufferCount; i++)
+        {
+            buffers[i] = ByteBuffer.allocateDirect((int)(slotsPerBuffer * slotSize))
+                    .order(ByteOrder.nativeOrder());
+        }
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        resizeThreshold = (long)(newCapacity * LOAD_FACTOR);
+    }
+
+    private void resize()
+    {
+        ByteBuffer[] oldBuffers = buffers;
+
+        allocate(capacity * 2);
+
+        for (ByteBuffer oldBuffer : oldBuffers)
+        {
+            for (int offset = 0; offset < oldBuffer.capacity(); offset += slotSize)
+            {
+                long high = oldBuffer.getLong(offset);
+                long low = oldBuffer.getLong(offset + 8);
+                if (high != 0 || low != 0)
+                {
+                    long slot = slotFor(high);
+                    while (getHigh(slot) != 0 || getLow(slot) != 0)
+                    {
+                        slot = (slot + 1) & mask;
+                    }
+                    put(slot, high, low, slotSize > 16 ? oldBuffer.getLong(offset + 16) : 0);
+                }
+            }
+        }
+    }
+}
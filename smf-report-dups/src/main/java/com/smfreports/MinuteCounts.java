@@ -0,0 +1,202 @@
+package com.smfreports;
+
+import java.util.*;
+
+/**
+ * Unique and duplicate record counts by system, minute and record type.
+ * <p>
+ * Counts are kept in an open addressing hash table using primitive
+ * arrays. The system index, epoch minute and record type are packed
+ * into a long key:
+ * <pre>
+ *   bits 63-48  system index
+ *   bits 47-16  minute since 1970-01-01T00:00
+ *   bits 15-0   record type, or ALL_TYPES for the total for the minute
+ * </pre>
+ * Counting a record does not create any objects, unlike nested maps
+ * which need a LocalDateTime, boxed Integer and map entries for each
+ * record.
+ */
+class MinuteCounts
+{
+    /**
+     * Record type value for the count of all record types in a minute
+     */
+    static final int ALL_TYPES = 256;
+
+    private static final long EMPTY = -1;
+    private static final double LOAD_FACTOR = 0.5;
+
+    private final Map<String, Integer> systemIndexes = new HashMap<>();
+    private final List<String> systems = new ArrayList<>();
+
+    private long[] keys;
+    private int[] unique;
+    private int[] duplicates;
+    private int mask;
+    private int size = 0;
+
+    MinuteCounts()
+    {
+        allocate(1 << 12);
+    }
+
+    /**
+     * Get the index for a system, to be passed to {@link #count}.
+     * @param system the SMF system id
+     * @return the index for the system
+     */
+    int systemIndex(String system)
+    {
+        Integer index = systemIndexes.get(system);
+        if (index == null)
+        {
+            index = systems.size();
+            systemIndexes.put(system, index);
+            systems.add(system);
+        }
+        return index;
+    }
+
+    /**
+     * Count a record, in the entry for its record type and the
+     * entry for all record types in the minute.
+     * @param systemIndex the index for the system from {@link #systemIndex}
+     * @param epochMinute the SMF minute, as minutes since 1970-01-01T00:00
+     * @param recordType the SMF record type
+     * @param duplicate true if the record is a duplicate
+     */
+    void count(int systemIndex, long epochMinute, int recordType, boolean duplicate)
+    {
+        long minuteKey = (long)systemIndex << 48 | (epochMinute & 0xFFFFFFFFL) << 16;
+        increment(find(minuteKey | recordType), duplicate);
+        increment(find(minuteKey | ALL_TYPES), duplicate);
+    }
+
+    /**
+     * Add the counts from another MinuteCounts to this one.
+     * @param other the counts to add
+     */
+    void add(MinuteCounts other)
+    {
+        for (int slot = 0; slot < other.keys.length; slot++)
+        {
+            long key = other.keys[slot];
+            if (key != EMPTY)
+            {
+                // system indexes are different in each MinuteCounts
+                long systemIndex = systemIndex(other.systems.get((int)(key >>> 48)));
+                int target = find(systemIndex << 48 | (key & 0xFFFFFFFFFFFFL));
+                unique[target] += other.unique[slot];
+                duplicates[target] += other.duplicates[slot];
+            }
+        }
+    }
+
+    /**
+     * Receives the entries from {@link MinuteCounts#forEach}
+     */
+    interface Visitor
+    {
+        void visit(String system, long epochMinute, int recordType, int unique, int duplicates);
+    }
+
+    /**
+     * Pass each entry to a visitor. Entries are not in any particular order.
+     * @param visitor the visitor
+     */
+    void forEach(Visitor visitor)
+    {
+        for (int slot = 0; slot < keys.length; slot++)
+        {
+            long key = keys[slot];
+            if (key != EMPTY)
+            {
+                visitor.visit(systems.get((int)(key >>> 48)),
+                        (key >>> 16) & 0xFFFFFFFFL,
+                        (int)(key & 0xFFFF),
+                        unique[slot],
+                        duplicates[slot]);
+            }
+        }
+    }
+
+    private void increment(int slot, boolean duplicate)
+    {
+        if (duplicate)
+        {
+            duplicates[slot]++;
+        }
+        else
+        {
+            unique[slot]++;
+        }
+    }
+
+    /**
+     * Find the slot for a key, adding the key if necessary
+     */
+    private int find(long key)
+    {
+        int slot = slotFor(key);
+        while (true)
+        {
+            long slotKey = keys[slot];
+            if (slotKey == key)
+            {
+                return slot;
+            }
+            if (slotKey == EMPTY)
+            {
+                if (size + 1 > keys.length * LOAD_FACTOR)
+                {
+                    resize();
+                    return find(key);
+                }
+                keys[slot] = key;
+                size++;
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int slotFor(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        unique = new int[capacity];
+        duplicates = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private void resize()
+    {
+        long[] oldKeys = keys;
+        int[] oldUnique = unique;
+        int[] oldDuplicates = duplicates;
+
+        allocate(keys.length * 2);
+
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != EMPTY)
+            {
+                int slot = slotFor(oldKeys[i]);
+                while (keys[slot] != EMPTY)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                unique[slot] = oldUnique[i];
+                duplicates[slot] = oldDuplicates[i];
+            }
+        }
+    }
+}
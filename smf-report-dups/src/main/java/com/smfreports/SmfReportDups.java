@@ -1,12 +1,11 @@
 package com.smfreports;
 
 import java.io.*;
-import java.nio.ByteBuffer;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 import com.blackhillsoftware.smf.SmfRecord;
@@ -15,10 +14,31 @@ import com.blackhillsoftware.smf.SmfRecordReader;
 public class SmfReportDups
 {
     private static void printUsage() {
-        System.out.println("Usage: SmfReportDups <input-file> [input-file2 ...]");
+        System.out.println("Usage: SmfReportDups [options] <input-file> [input-file2 ...]");
         System.out.println("");
         System.out.println("Search for duplicated data in input-file.");
         System.out.println("");
+        System.out.println("  --threads N       Read up to N input files at the same time. The");
+        System.out.println("                    report is the same as a single threaded run.");
+        System.out.println("                    With --approximate or --verify, records are read");
+        System.out.println("                    and hashed in parallel but checked in input order.");
+        System.out.println("                    Default: 1");
+        System.out.println("  --hash name       Hash algorithm used to identify duplicates:");
+        System.out.println("                    murmur3 (default) or sha1.");
+        System.out.println("  --verify          Compare records byte for byte when the hash matches");
+        System.out.println("                    a previous record. Unique records are copied to a");
+        System.out.println("                    temporary file for the comparison.");
+        System.out.println("  --index dir       Keep record hashes in directory dir, so records seen");
+        System.out.println("                    in previous runs are also counted as duplicates.");
+        System.out.println("                    Hashes from this run are added when it completes.");
+        System.out.println("                    Every run using the index must use the same --hash.");
+        System.out.println("  --retain N        Keep hashes in the index for N days of SMF data.");
+        System.out.println("                    Default: 0, keep all hashes.");
+        System.out.println("  --approximate N   Estimate duplicate counts using a Bloom filter sized");
+        System.out.println("                    for N unique records, using much less memory. Some");
+        System.out.println("                    unique records will be counted as duplicates.");
+        System.out.println("  --fpp P           Target rate of unique records counted as duplicates");
+        System.out.println("                    in approximate mode. Default: 0.01");
         System.out.println("  input-file        File containing SMF records. Binary data, RECFM=U or");
         System.out.println("                    V[B] records including RDW.");
         System.out.println("  input-file2 ...   Additional input file(s), to search for duplicates");
@@ -38,7 +58,7 @@ public class SmfReportDups
         System.out.println("reporting every record type for those minutes.");
     }
     
-    public static void main(String[] args) throws IOException, NoSuchAlgorithmException
+    public static void main(String[] args) throws IOException
     {
         if (args.length == 0 || args[0].equals("--help") || args[0].equals("-h"))
         {
@@ -46,64 +66,112 @@ public class SmfReportDups
             System.exit(0);
         }
         
-        // We don't need a cryptographically secure hash, SHA-1 might be 
-        // faster than SHA-256 hashes and should be adequate to find duplicates
-        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
-        Set<Digest> recordHashes = new HashSet<>();
-        
-        // Map to count by SystemID->Minute
-        Map< String, Map<LocalDateTime, RecordStats>> bySystemByMinute = new HashMap<>();
+        int threads = 1;
+        HashAlgorithm algorithm = HashAlgorithm.MURMUR3;
+        boolean verify = false;
+        String indexName = null;
+        int retainDays = 0;
+        long approximate = 0;
+        double fpp = 0.01;
+        List<String> names = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--hash":
+                    algorithm = HashAlgorithm.fromName(args[++i]);
+                    break;
+                case "--verify":
+                    verify = true;
+                    break;
+                case "--index":
+                    indexName = args[++i];
+                    break;
+                case "--retain":
+                    retainDays = Integer.parseInt(args[++i]);
+                    break;
+                case "--approximate":
+                    approximate = Long.parseLong(args[++i]);
+                    break;
+                case "--fpp":
+                    fpp = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    names.add(args[i]);
+                    break;
+                }
+            }
+        }
+        catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e)
+        {
+            names.clear();
+        }
+        if (names.isEmpty() || threads < 1 || retainDays < 0 
+                || approximate < 0 || !(fpp > 0 && fpp < 1)
+                || (approximate > 0 && verify))
+        {
+            printUsage();
+            System.exit(0);
+        }
         
-        // Map to count by SystemID->Record Type->Minute 
-        Map< String, Map<LocalDateTime, Map<Integer, RecordStats>>> bySystemByMinuteByType = new HashMap<>();
+        // Counts by system, minute and record type
+        MinuteCounts counts = new MinuteCounts();
                
-        int in = 0;
-        int dups = 0;
-        try
+        long in = 0;
+        long dups = 0;
+        long collisions = 0;
+        // Record hashes are kept in an off-heap table so we don't
+        // create objects for each record.
+        try (
+            DuplicateDetector detector = approximate > 0 
+                ? new DuplicateDetector(approximate, fpp) 
+                : new DuplicateDetector(verify);
+            FingerprintIndex index = indexName != null ? new FingerprintIndex(Paths.get(indexName), algorithm, retainDays) : null;
+            )
         {
+            if (index != null)
+            {
+                System.out.format("Loaded %,d hashes from index.%n", index.load(detector));
+            }
+            
             // Multiple input file/datasets can be specified to find duplicates
             // across files.
-            for (int i = 0; i < args.length; i++)
+            List<FileScanner> results = new ArrayList<>();
+            if (threads > 1 && (approximate > 0 || verify))
+            {
+                results = scanOrdered(names, algorithm, detector, index, threads);
+            }
+            else if (threads > 1)
+            {
+                results = scanParallel(names, algorithm, detector, index, threads);
+            }
+            else
             {
-                try (SmfRecordReader reader = SmfRecordReader.fromName(args[i]))                
+                FileScanner scanner = new FileScanner(algorithm, detector, index);
+                for (String name : names)
                 {
-                    for (SmfRecord record : reader)
-                    {
-                        in++;
-                        String system = record.system();
-                        LocalDateTime minute = record.smfDateTime()
-                                .truncatedTo(ChronoUnit.MINUTES);
-                        Integer recordtype = record.recordType();
-                        
-                        // get a stats entry for this system and minute
-                        RecordStats minuteStats = bySystemByMinute
-                                .computeIfAbsent(system, key -> new HashMap<>())
-                                .computeIfAbsent(minute, key -> new RecordStats(null, minute));
-                        
-                        
-                        // get a stats entry for this system, minute and record type
-                        RecordStats minuteRecordTypeStats = bySystemByMinuteByType
-                                .computeIfAbsent(system, key -> new HashMap<>())
-                                .computeIfAbsent(minute, key -> new HashMap<>())
-                                .computeIfAbsent(recordtype, key -> new RecordStats(recordtype, minute));
-                        
-                        // Is is a duplicate of one already seen?
-                        if (recordHashes.add(new Digest(sha1.digest(record.getBytes()))))
-                        {
-                            // no
-                            minuteStats.countUnique();
-                            minuteRecordTypeStats.countUnique();
-                        }
-                        else
-                        {
-                            // yes
-                            dups++;
-                            minuteStats.countDuplicate();
-                            minuteRecordTypeStats.countDuplicate();
-                        }
-                    }
+                    scanner.scan(name);
                 }
+                results.add(scanner);
+            }
+            
+            for (FileScanner result : results)
+            {
+                in += result.in;
+                dups += result.dups;
+                counts.add(result.counts);
+            }
+            
+            if (index != null)
+            {
+                index.commit();
             }
+            collisions = detector.collisions();
         }
         catch (Exception e)
         {
@@ -111,65 +179,271 @@ public class SmfReportDups
             throw e;
         }
         
-        System.out.format("Finished, %d records in, %d duplicates.%n", in, dups);
+        boolean estimated = approximate > 0;
+        if (estimated)
+        {
+            System.out.format("Finished, %d records in, %d duplicates (estimated).%n", in, dups);
+            System.out.format("Duplicate counts are estimates. About %.2f%% of unique records are"
+                    + " counted as duplicates with %d or fewer unique records.%n", 
+                    fpp * 100, approximate);
+        }
+        else
+        {
+            System.out.format("Finished, %d records in, %d duplicates.%n", in, dups);
+        }
+        if (collisions > 0)
+        {
+            System.out.format("%d records had the same hash as a different record.%n", collisions);
+        }
         
-        writeReport(bySystemByMinute, bySystemByMinuteByType);
+        writeReport(counts, estimated);
+
+    }
+
+    /**
+     * Scan the input files using a thread pool, one task per file.
+     * <p>
+     * Which copy of a duplicated record is counted as unique depends on 
+     * timing, but identical records have the same system, minute and 
+     * record type so the counts are the same as a single threaded run.
+     * This is only true for exact hashes. With a Bloom filter or
+     * verification the result depends on the order records are checked,
+     * so {@link #scanOrdered} is used instead.
+     */
+    private static List<FileScanner> scanParallel(List<String> names, HashAlgorithm algorithm,
+            DuplicateDetector detector, FingerprintIndex index, int threads) 
+            throws IOException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, names.size()));
+        try
+        {
+            List<Future<FileScanner>> futures = new ArrayList<>();
+            for (String name : names)
+            {
+                futures.add(pool.submit(() -> 
+                {
+                    FileScanner scanner = new FileScanner(algorithm, detector, index);
+                    scanner.scan(name);
+                    return scanner;
+                }));
+            }
+            
+            List<FileScanner> results = new ArrayList<>();
+            for (Future<FileScanner> future : futures)
+            {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Read and hash the input files using a thread pool, and check the
+     * records for duplicates in input order.
+     * <p>
+     * A Bloom filter false positive depends on which records were added
+     * before, and with verification a record that has the same hash as a
+     * different record is compared with whichever was seen first. The
+     * records are checked in the same order as a single threaded run so
+     * the report is the same. Each file can read ahead a limited number
+     * of batches while earlier files are checked.
+     */
+    private static List<FileScanner> scanOrdered(List<String> names, HashAlgorithm algorithm,
+            DuplicateDetector detector, FingerprintIndex index, int threads) 
+            throws IOException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, names.size()));
+        try
+        {
+            // Files are started in order, so the file being checked
+            // always has a thread or has finished reading
+            List<BlockingQueue<HashedBatch>> queues = new ArrayList<>();
+            for (String name : names)
+            {
+                BlockingQueue<HashedBatch> queue = new ArrayBlockingQueue<>(4);
+                queues.add(queue);
+                pool.submit(() -> 
+                {
+                    readAndHash(name, algorithm, queue);
+                    return null;
+                });
+            }
+            
+            FileScanner scanner = new FileScanner(algorithm, detector, index);
+            for (BlockingQueue<HashedBatch> queue : queues)
+            {
+                for (HashedBatch batch = queue.take(); batch != HashedBatch.END; batch = queue.take())
+                {
+                    if (batch.failure != null)
+                    {
+                        Throwable failure = batch.failure;
+                        if (failure instanceof IOException) throw (IOException) failure;
+                        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+                        if (failure instanceof Error) throw (Error) failure;
+                        throw new IOException(failure);
+                    }
+                    scanner.check(batch.records, batch.hashes);
+                }
+            }
+            return Collections.singletonList(scanner);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Read and hash the records from a file, adding batches to the queue
+     * followed by END. An error is added to the queue as a failed batch.
+     */
+    private static void readAndHash(String name, HashAlgorithm algorithm, 
+            BlockingQueue<HashedBatch> queue) throws InterruptedException
+    {
+        try (SmfRecordReader reader = SmfRecordReader.fromName(name))
+        {
+            RecordHasher hasher = algorithm.newHasher();
+            List<SmfRecord> records = new ArrayList<>(FileScanner.BATCH_SIZE);
+            for (SmfRecord record : reader)
+            {
+                records.add(record);
+                if (records.size() == FileScanner.BATCH_SIZE)
+                {
+                    queue.put(new HashedBatch(records, hasher));
+                    records = new ArrayList<>(FileScanner.BATCH_SIZE);
+                }
+            }
+            if (!records.isEmpty())
+            {
+                queue.put(new HashedBatch(records, hasher));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // stopped after an error
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            queue.put(new HashedBatch(e));
+        }
+        queue.put(HashedBatch.END);
+    }
 
+    /**
+     * A batch of records and their hashes, or an error reading the file.
+     */
+    private static class HashedBatch
+    {
+        static final HashedBatch END = new HashedBatch(null);
+        
+        HashedBatch(List<SmfRecord> records, RecordHasher hasher)
+        {
+            this.records = records;
+            this.hashes = new long[records.size() * 2];
+            this.failure = null;
+            for (int i = 0; i < records.size(); i++)
+            {
+                hasher.hash(records.get(i).getBytes(), hashes, i * 2);
+            }
+        }
+        
+        HashedBatch(Throwable failure)
+        {
+            this.records = null;
+            this.hashes = null;
+            this.failure = failure;
+        }
+        
+        final List<SmfRecord> records;
+        final long[] hashes;
+        final Throwable failure;
     }
 
-    private static void writeReport(
-            Map<String, Map<LocalDateTime, RecordStats>> bySystemByMinute,
-            Map<String, Map<LocalDateTime, Map<Integer, RecordStats>>> bySystemByMinuteByType) 
+    private static void writeReport(MinuteCounts counts, boolean estimated) 
     {
-        // get a list of all systems
-        List<String> systems = bySystemByMinute.keySet().stream()
+        // Find minutes where duplicate count is greater than or equal to unique record count,
+        // for all record types and by record type
+        Map<String, List<RecordStats>> bySystem = new HashMap<>();
+        Map<String, List<RecordStats>> bySystemByType = new HashMap<>();
+        
+        counts.forEach((system, epochMinute, recordtype, unique, duplicates) -> 
+        {
+            RecordStats entry = new RecordStats(
+                    recordtype == MinuteCounts.ALL_TYPES ? null : recordtype, 
+                    LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC),
+                    unique, 
+                    duplicates);
+            if (entry.isDuplicated())
+            {
+                (entry.getRecordtype() == null ? bySystem : bySystemByType)
+                    .computeIfAbsent(system, key -> new ArrayList<>())
+                    .add(entry);
+            }
+        });
+        
+        // get a list of all systems with duplicates
+        Set<String> systemSet = new HashSet<>(bySystem.keySet());
+        systemSet.addAll(bySystemByType.keySet());
+        List<String> systems = systemSet.stream()
                 .sorted()
                 .collect(Collectors.toList());
         
         for (String system : systems)
         {
-            // get entries by minute and by minute/recordtype for this system
-            
-            Map<LocalDateTime, RecordStats> byMinute = 
-                    bySystemByMinute.get(system);
-            
-            Map<LocalDateTime, Map<Integer, RecordStats>> byMinuteByType = 
-                    bySystemByMinuteByType.get(system);
-            
-            // Find minutes where duplicate count is greater than or equal to unique record count
             List<RecordStats> duplicateMinutesBySystem = 
-                byMinute.values().stream()
-                    .filter(entry -> entry.dupPercent() >= 100)
+                bySystem.getOrDefault(system, Collections.emptyList()).stream()
                     .sorted(Comparator.comparing(RecordStats::getMinute))
                     .collect(Collectors.toList());
                         
             // We don't want to report duplicates for every record type when 
             // we report duplicates by system
-            // Remove entries for those minutes from the map by record type.   
-
-            for (RecordStats entry : duplicateMinutesBySystem)
-            {
-                byMinuteByType.remove(entry.getMinute());
-            }
+            // Exclude entries for those minutes from the list by record type.   
+            
+            Set<LocalDateTime> duplicateMinutes = duplicateMinutesBySystem.stream()
+                    .map(RecordStats::getMinute)
+                    .collect(Collectors.toSet());
             
-            // Flatmap into one list and select entries with duplicates.
             // Sort by minute and record type
     
-            List<RecordStats> duplicatesByMinuteByType = byMinuteByType.values().stream()
-                    .flatMap(entry -> entry.values().stream())
-                    .filter(entry -> entry.dupPercent() >= 100)
+            List<RecordStats> duplicatesByMinuteByType = 
+                bySystemByType.getOrDefault(system, Collections.emptyList()).stream()
+                    .filter(entry -> !duplicateMinutes.contains(entry.getMinute()))
                     .sorted(Comparator.comparing(RecordStats::getMinute)
                             .thenComparing(RecordStats::getRecordtype))
                     .collect(Collectors.toList());
             
             // Write reports.
             
-            reportBySystem(system, duplicateMinutesBySystem);
-            reportByRecordType(system, duplicatesByMinuteByType);
+            reportBySystem(system, duplicateMinutesBySystem, estimated);
+            reportByRecordType(system, duplicatesByMinuteByType, estimated);
         }
     }
     
-    private static void reportBySystem(String system, List<RecordStats> duplicateMinutesBySystem) 
+    private static void reportBySystem(String system, List<RecordStats> duplicateMinutesBySystem,
+            boolean estimated) 
     {
         if (!duplicateMinutesBySystem.isEmpty())
         {
@@ -178,21 +452,22 @@ public class SmfReportDups
             System.out.format("%n%-20s %8s %8s %6s%n%n",
                     "Minute",
                     "Records",
-                    "Dup",
-                    "Dup%"
+                    estimated ? "~Dup" : "Dup",
+                    estimated ? "~Dup%" : "Dup%"
                     );
             for (RecordStats minuteEntry : duplicateMinutesBySystem)
             {
-                System.out.format("%-20s %8d %8d %6.0f%n", 
+                System.out.format("%-20s %8d %8d %6s%n", 
                         minuteEntry.getMinute(), 
                         minuteEntry.getTotal(), 
                         minuteEntry.getDuplicates(),
-                        minuteEntry.dupPercent());
+                        minuteEntry.dupPercentText());
             }
         }
     }
     
-    private static void reportByRecordType(String system, List<RecordStats> duplicatesByMinuteByType) 
+    private static void reportByRecordType(String system, List<RecordStats> duplicatesByMinuteByType,
+            boolean estimated) 
     {
         if (!duplicatesByMinuteByType.isEmpty())
         {
@@ -201,45 +476,134 @@ public class SmfReportDups
                     "Minute",
                     "Type",
                     "Records",
-                    "Dup",
-                    "Dup%"
+                    estimated ? "~Dup" : "Dup",
+                    estimated ? "~Dup%" : "Dup%"
                     );
             
             for (RecordStats recordTypeEntry : duplicatesByMinuteByType)
             {
                 
-                System.out.format("%-20s %4d %8d %8d %6.0f%n",
+                System.out.format("%-20s %4d %8d %8d %6s%n",
                         recordTypeEntry.getMinute(),
                         recordTypeEntry.getRecordtype(), 
                         recordTypeEntry.getTotal(), 
                         recordTypeEntry.getDuplicates(),
-                        recordTypeEntry.dupPercent());
+                        recordTypeEntry.dupPercentText());
             }
         }
     }
     
-    private static class RecordStats
+    /**
+     * Read files, check for duplicates and count the records.
+     * <p>
+     * Records are read and hashed in batches. The DuplicateDetector and
+     * FingerprintIndex can be shared with other threads: each batch is 
+     * checked while holding the lock on the DuplicateDetector. Counts are
+     * kept separately for each FileScanner.
+     */
+    private static class FileScanner
     {
-        RecordStats(Integer recordtype, LocalDateTime minute)
+        private static final int BATCH_SIZE = 1000;
+        
+        FileScanner(HashAlgorithm algorithm, DuplicateDetector detector, FingerprintIndex index)
         {
-            this.recordtype = recordtype;
-            this.minute = minute;
+            this.hasher = algorithm.newHasher();
+            this.detector = detector;
+            this.index = index;
         }
         
-        private Integer recordtype;
-        private int unique = 0;
-        private int duplicates = 0;
-        private LocalDateTime minute;
-
-        public void countUnique()
+        private final RecordHasher hasher;
+        private final DuplicateDetector detector;
+        private final FingerprintIndex index;
+        
+        private final List<SmfRecord> batch = new ArrayList<>(BATCH_SIZE);
+        private final long[] hashes = new long[BATCH_SIZE * 2];
+        private final boolean[] duplicate = new boolean[BATCH_SIZE];
+        
+        private final MinuteCounts counts = new MinuteCounts();
+        private long in = 0;
+        private long dups = 0;
+        
+        void scan(String name) throws IOException
         {
-            unique++;
+            try (SmfRecordReader reader = SmfRecordReader.fromName(name))                
+            {
+                for (SmfRecord record : reader)
+                {
+                    batch.add(record);
+                    if (batch.size() == BATCH_SIZE)
+                    {
+                        processBatch();
+                    }
+                }
+                processBatch();
+            }
         }
         
-        public void countDuplicate()
+        private void processBatch() throws IOException
+        {
+            for (int i = 0; i < batch.size(); i++)
+            {
+                hasher.hash(batch.get(i).getBytes(), hashes, i * 2);
+            }
+            check(batch, hashes);
+            batch.clear();
+        }
+        
+        /**
+         * Check a batch of up to BATCH_SIZE records for duplicates and
+         * count them.
+         * @param records the records
+         * @param recordHashes the high and low hash for each record
+         * @throws IOException if an error occurs writing the index
+         */
+        void check(List<SmfRecord> records, long[] recordHashes) throws IOException
+        {
+            // Is each record a duplicate of one already seen?
+            synchronized (detector)
+            {
+                for (int i = 0; i < records.size(); i++)
+                {
+                    SmfRecord record = records.get(i);
+                    duplicate[i] = detector.isDuplicate(record.getBytes(), 
+                            recordHashes[i * 2], recordHashes[i * 2 + 1]);
+                    if (!duplicate[i] && index != null)
+                    {
+                        index.add(record.smfDate(), recordHashes[i * 2], recordHashes[i * 2 + 1]);
+                    }
+                }
+            }
+            
+            for (int i = 0; i < records.size(); i++)
+            {
+                SmfRecord record = records.get(i);
+                in++;
+                long minute = Math.floorDiv(
+                        record.smfDateTime().toEpochSecond(ZoneOffset.UTC), 60);
+                counts.count(counts.systemIndex(record.system()), minute, 
+                        record.recordType(), duplicate[i]);
+                if (duplicate[i])
+                {
+                    dups++;
+                }
+            }
+        }
+    }
+    
+    private static class RecordStats
+    {
+        RecordStats(Integer recordtype, LocalDateTime minute, int unique, int duplicates)
         {
-            duplicates++;
+            this.recordtype = recordtype;
+            this.minute = minute;
+            this.unique = unique;
+            this.duplicates = duplicates;
         }
+        
+        private Integer recordtype;
+        private int unique;
+        private int duplicates;
+        private LocalDateTime minute;
 
         private Integer getRecordtype() { return recordtype; }    
         private LocalDateTime getMinute() { return minute; }
@@ -247,41 +611,14 @@ public class SmfReportDups
 
         private int getTotal() { return unique + duplicates; }    
         private double dupPercent() { return (double)duplicates / unique * 100; }
-    }
-    
-    /**
-     * A class to store hashes in the set, providing hashcode and equals implementations
-     * We need multiple matches before we report duplicate data, so we can use 
-     * a 64 bit integer for the hash code without significant danger of incorrect 
-     * reports. This allows more data to be processed in available memory.
-     */
-    private static class Digest
-    {
-        public Digest(byte[] digest)
-        {
-            // Use the first 8 bytes of the SHA-1 hash 
-            hashCode = ByteBuffer.wrap(digest).getLong();
-        }
-        
-        @Override
-        public int hashCode() 
+
+        // With --index, all the records in a minute can be duplicates of
+        // records from an earlier run, leaving no unique records
+        private boolean isDuplicated() { return duplicates >= unique; }
+        private String dupPercentText()
         {
-            // simply truncate the 64 bit value
-            return (int) hashCode;
-        }
-        
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            Digest other = (Digest) obj;
-            return this.hashCode == other.hashCode;    
+            return unique == 0 ? "n/a" : String.format("%.0f", dupPercent());
         }
-        
-        private long hashCode;    
     }
+
 }
@@ -91,6 +91,13 @@ public class CicsTransactions
                     .desc("exclude specific transactions: --xtranid=AAAA[,BBBB...]")
                     .build());
         
+        smf2JsonCli.options().addOption(
+                Option.builder()
+                    .longOpt("dictionaries")
+                    .hasArg(true)
+                    .desc("dictionary store directory, used for applids without a dictionary in the input")
+                    .build());
+        
     }
     
     private static Configuration readCommandLineArgs(String[] args, Smf2JsonCLI smf2JsonCli) 
@@ -105,6 +112,11 @@ public class CicsTransactions
 
         config.abendsOnly = commandLine.hasOption("abend");
         
+        if (commandLine.hasOption("dictionaries"))
+        {
+            config.dictionaries = new DictionaryStore(commandLine.getOptionValue("dictionaries"));
+        }
+        
         if (commandLine.hasOption("ms"))
         {
             try
@@ -143,6 +155,7 @@ public class CicsTransactions
         Set<String> excludeTransactions = Collections.emptySet();
         double thresholdSeconds = 0;
         boolean abendsOnly = false;
+        DictionaryStore dictionaries = null;
     }
     
     private static class CliClient implements Smf2JsonCLI.Client
@@ -162,6 +175,13 @@ public class CicsTransactions
             
             if (includeApplid(r110.mnProductSection().smfmnprn()))
             {
+                if (!r110.haveDictionary() && config.dictionaries != null
+                        && loadDictionaries(r110.mnProductSection().smfmnprn()))
+                {
+                    // try again with the dictionaries from the store
+                    r110 = Smf110Record.from(record);
+                }
+
                 for (PerformanceRecord transaction : r110.performanceRecords())
                 {
                     if (includeTransaction(transaction))
@@ -181,6 +201,18 @@ public class CicsTransactions
             return result;
         }
 
+        private boolean loadDictionaries(String smfmnprn)
+        {
+            try
+            {
+                return config.dictionaries.load(smfmnprn);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         private boolean includeApplid(String smfmnprn) 
         {
             if (config.excludeApplids.contains(smfmnprn)) return false;
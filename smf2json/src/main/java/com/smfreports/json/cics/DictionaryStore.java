@@ -0,0 +1,68 @@
+package com.smfreports.json.cics;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import com.blackhillsoftware.smf.cics.Smf110Record;
+
+/**
+ * A directory of CICS dictionary records, stored by APPLID.
+ * <p>
+ * Each APPLID has a file APPLID.dict containing its dictionary records
+ * in SMF format (records with RDW). The store is created by
+ * ExtractDictionaries --store.
+ * <p>
+ * Reports can load the dictionaries for an APPLID when they find a record
+ * without a dictionary, so only the dictionaries for the APPLIDs in the
+ * input are read. Dictionaries are loaded in the order they were added,
+ * so if an APPLID has more than one the most recently added is used.
+ */
+public class DictionaryStore
+{
+    private static final String SUFFIX = ".dict";
+
+    private final Path directory;
+
+    // APPLIDs that have been loaded, or found to have no dictionaries
+    private final Set<String> loaded = new HashSet<>();
+
+    /**
+     * Open a dictionary store.
+     * @param directory the directory name
+     */
+    public DictionaryStore(String directory)
+    {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Load the dictionaries for an APPLID, if they have not been loaded
+     * already. After the dictionaries are loaded, create a new Smf110Record
+     * from the SMF record to use the dictionary.
+     * @param applid the APPLID
+     * @return true if dictionaries were loaded, false if they were
+     * loaded previously or the store has no dictionaries for the APPLID
+     * @throws IOException if the dictionaries can't be read
+     */
+    public synchronized boolean load(String applid) throws IOException
+    {
+        applid = applid.trim();
+        if (!loaded.add(applid))
+        {
+            return false;
+        }
+        Path file = fileFor(applid);
+        if (!Files.exists(file))
+        {
+            return false;
+        }
+        Smf110Record.dictionariesFromName(file.toString());
+        return true;
+    }
+
+    private Path fileFor(String applid)
+    {
+        return directory.resolve(applid + SUFFIX);
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import com.blackhillsoftware.smf.*;
+import com.blackhillsoftware.smf.cics.*;
+import com.blackhillsoftware.smf.cics.monitoring.*;
+import com.blackhillsoftware.smf.cics.monitoring.fields.*;
+
+/*
+ * Process CICS transactions like Cics1BParallelCollect, using a
+ * ParallelRecordSource to read the records.
+ *
+ * The records are read on a separate thread and passed to the parallel
+ * stream in fixed size batches, so all the stream threads can be kept
+ * busy and memory use is limited by the batch and queue sizes.
+ */
+public class Cics1BBatched
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.out.println("Usage: Cics1BBatched <dictionary-name> <input-name> [batch-size] [queue-size]");
+            System.out.println("<input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");
+            System.out.format("batch-size: records in each batch, default %d%n",
+                    ParallelRecordSource.DEFAULT_BATCH_SIZE);
+            System.out.format("queue-size: maximum batches waiting to be processed, default %d%n",
+                    ParallelRecordSource.DEFAULT_QUEUE_SIZE);
+            return;
+        }
+
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : ParallelRecordSource.DEFAULT_BATCH_SIZE;
+        int queueSize = args.length > 3 ? Integer.parseInt(args[3]) : ParallelRecordSource.DEFAULT_QUEUE_SIZE;
+
+        var start = Instant.now();
+
+        Smf110Record.dictionariesFromName(args[0]);
+
+        Totals totals;
+        try (SmfRecordReader reader = SmfRecordReader.fromName(args[1])
+        		.include(110, 1);
+        	ParallelRecordSource source = new ParallelRecordSource(reader, batchSize, queueSize))
+        {
+            totals = source.stream()
+            	.collect(Totals::new, Totals::add, Totals::merge);
+        }
+
+        writeReport(totals.transactions);
+
+        System.out.format(
+                "%nTotal Transactions: %,d%n",
+                totals.txcount);
+
+        if (totals.nodictionary > 0)
+        {
+            System.out.format(
+                    "%nSkipped %,d records because no applicable dictionary was found.%n",
+                    totals.nodictionary);
+        }
+
+        if (Smf110Record.getCompressedByteCount() > 0)
+        {
+            System.out.format(
+                    "%nCompressed bytes %,d, decompressed bytes %,d, compression %.1f%%.%n",
+                    Smf110Record.getCompressedByteCount(),
+                    Smf110Record.getDecompressedByteCount(),
+                    (double)(Smf110Record.getDecompressedByteCount() - Smf110Record.getCompressedByteCount()) / Smf110Record.getDecompressedByteCount() * 100);
+        }
+
+        System.out.format("Run Time: %s%n", Duration.between(start, Instant.now()));
+    }
+
+    private static void writeReport(Map<TransactionKey, TransactionData> transactions)
+    {
+    	System.out.format("%-8s %-4s %15s %15s %15s %15s %15s %15s %15s %15s %15s%n%n",
+                "APPLID",
+                "TRAN",
+                "Count",
+                "Min Elapsed",
+                "Max Elapsed",
+                "Avg Elapsed",
+                "P50 Elapsed",
+                "P95 Elapsed",
+                "P99 Elapsed",
+                "Total CPU",
+                "Avg CPU");
+
+    	transactions.entrySet().stream()
+	        .sorted(Map.Entry.comparingByKey(
+	                Comparator.comparing(TransactionKey::applid)
+	                    .thenComparing(TransactionKey::transaction)))
+	        .forEachOrdered(txInfo ->
+	        {
+	        	System.out.format("%-8s %-4s %,15d %15f %15f %15f %15f %15f %15f %15f %15f%n",
+	        			txInfo.getKey().applid(),
+	        			txInfo.getKey().transaction(),
+	        			txInfo.getValue().count,
+	        			txInfo.getValue().minElapsed,
+	        			txInfo.getValue().maxElapsed,
+	        			txInfo.getValue().avgElapsed(),
+	        			txInfo.getValue().elapsedHistogram.percentile(50),
+	        			txInfo.getValue().elapsedHistogram.percentile(95),
+	        			txInfo.getValue().elapsedHistogram.percentile(99),
+	        			txInfo.getValue().cpu,
+	        			txInfo.getValue().avgCpu());
+	        });
+    }
+
+    private static record TransactionKey(String applid, String transaction) {};
+
+    /**
+     * Results for the records processed by one thread. Each Totals
+     * object is only used by one thread at a time, so no locking is
+     * required.
+     */
+    private static class Totals
+    {
+    	public void add(SmfRecord smfRecord)
+    	{
+            var r110 = Smf110Record.from(smfRecord);
+            if (r110.haveDictionary())
+            {
+            	String applid = r110.mnProductSection().smfmnprn();
+            	for (var txData : r110.performanceRecords())
+            	{
+            		txcount++;
+            		String txName = txData.getField(Field.TRAN);
+            		var key = new TransactionKey(applid, txName);
+            		transactions.computeIfAbsent(key, x -> new TransactionData())
+            			.add(txData);
+            	}
+            }
+            else
+            {
+            	nodictionary++;
+            }
+    	}
+
+    	public void merge(Totals other)
+    	{
+    		txcount += other.txcount;
+    		nodictionary += other.nodictionary;
+    		other.transactions.forEach((key, data) ->
+    			transactions.merge(key, data, TransactionData::merge));
+    	}
+
+    	Map<TransactionKey, TransactionData> transactions = new HashMap<>();
+    	long txcount = 0;
+    	long nodictionary = 0;
+    }
+
+    private static class TransactionData
+    {
+    	public void add(PerformanceRecord txData)
+    	{
+    		count++;
+    		double elapsed = txData.elapsedSeconds();
+    		totalElapsed += elapsed;
+    		minElapsed = Math.min(minElapsed, elapsed);
+    		maxElapsed = Math.max(maxElapsed, elapsed);
+    		elapsedHistogram.record(elapsed);
+    		cpu += txData.getField(Field.USRCPUT).timerSeconds();
+    	}
+
+    	public TransactionData merge(TransactionData other)
+    	{
+    		count += other.count;
+    		totalElapsed += other.totalElapsed;
+    		minElapsed = Math.min(minElapsed, other.minElapsed);
+    		maxElapsed = Math.max(maxElapsed, other.maxElapsed);
+    		elapsedHistogram.merge(other.elapsedHistogram);
+    		cpu += other.cpu;
+    		return this;
+    	}
+
+    	long count = 0;
+    	double totalElapsed = 0;
+    	double minElapsed = Double.POSITIVE_INFINITY;
+    	double maxElapsed = Double.NEGATIVE_INFINITY;
+    	LatencyHistogram elapsedHistogram = new LatencyHistogram();
+    	double cpu = 0;
+
+    	double avgElapsed() { return totalElapsed / count; }
+    	double avgCpu() { return cpu / count ; }
+    }
+}
@@ -0,0 +1,94 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * Compare the run time of Cics1BParallel, Cics1BParallelCollect,
+ * Cics1BBatched and Cics1BProjected using the same input, e.g. a file
+ * created by GenerateInput.
+ *
+ * The programs are run alternately in the same JVM, after a warm up
+ * run of each. Report output is discarded.
+ *
+ * Run this program from the compiled jar, because it calls the other
+ * programs. The number of threads used by parallel streams can be set
+ * using -Djava.util.concurrent.ForkJoinPool.common.parallelism=N
+ * to see how each program scales with more threads.
+ */
+public class Cics1BParallelBenchmark
+{
+    private interface Program
+    {
+        void run(String[] args) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.out.println("Usage: Cics1BParallelBenchmark <dictionary-name> <input-name> [runs]");
+            System.out.println("<input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");
+            System.out.println("runs: number of measured runs for each program, default 3");
+            return;
+        }
+
+        String[] programArgs = { args[0], args[1] };
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        Map<String, Program> programs = new LinkedHashMap<>();
+        programs.put("Cics1BParallel", Cics1BParallel::main);
+        programs.put("Cics1BParallelCollect", Cics1BParallelCollect::main);
+        programs.put("Cics1BBatched", Cics1BBatched::main);
+        programs.put("Cics1BProjected", Cics1BProjected::main);
+
+        System.out.format("Parallel stream threads: %d%n%n",
+                ForkJoinPool.getCommonPoolParallelism());
+
+        // warm up
+        for (Program program : programs.values())
+        {
+            runQuietly(program, programArgs);
+        }
+
+        Map<String, List<Double>> times = new LinkedHashMap<>();
+        for (int i = 0; i < runs; i++)
+        {
+            for (Map.Entry<String, Program> program : programs.entrySet())
+            {
+                double seconds = runQuietly(program.getValue(), programArgs);
+                times.computeIfAbsent(program.getKey(), key -> new ArrayList<>()).add(seconds);
+                System.out.format("%-24s run %d: %10.3f seconds%n", program.getKey(), i + 1, seconds);
+            }
+        }
+
+        System.out.format("%n%-24s %10s %10s %10s%n", "Program", "Min", "Avg", "Max");
+        times.forEach((name, values) ->
+        {
+            DoubleSummaryStatistics stats = values.stream()
+                    .mapToDouble(Double::doubleValue)
+                    .summaryStatistics();
+            System.out.format("%-24s %10.3f %10.3f %10.3f%n",
+                    name, stats.getMin(), stats.getAverage(), stats.getMax());
+        });
+    }
+
+    /**
+     * Run a program with the report output discarded
+     * @return the elapsed time in seconds
+     */
+    private static double runQuietly(Program program, String[] args) throws IOException
+    {
+        PrintStream stdout = System.out;
+        try (PrintStream discard = new PrintStream(OutputStream.nullOutputStream()))
+        {
+            System.setOut(discard);
+            long start = System.nanoTime();
+            program.run(args);
+            return (System.nanoTime() - start) / 1e9;
+        }
+        finally
+        {
+            System.setOut(stdout);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+import java.io.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import com.blackhillsoftware.smf.*;
+import com.blackhillsoftware.smf.cics.*;
+import com.blackhillsoftware.smf.cics.monitoring.*;
+import com.blackhillsoftware.smf.cics.monitoring.fields.*;
+
+/*
+ * Process CICS transactions like Cics1BParallelCollect, reading only
+ * the required fields using CicsFieldProjection.
+ *
+ * The dictionary entry for USRCPUT is found once per dictionary
+ * instead of for every transaction, and the values are read into a
+ * Row that is reused for every transaction. Totals are kept in a map
+ * by APPLID then by transaction name, so the APPLID is looked up once
+ * per SMF record and no key object is created for each transaction.
+ */
+public class Cics1BProjected
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.out.println("Usage: Cics1BProjected <dictionary-name> <input-name>");
+            System.out.println("<input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");
+            return;
+        }
+
+        var start = Instant.now();
+
+        Smf110Record.dictionariesFromName(args[0]);
+
+        Totals totals;
+        try (SmfRecordReader reader = SmfRecordReader.fromName(args[1])
+        		.include(110, 1))
+        {
+            totals = reader.stream()
+            	.parallel()
+            	.collect(Totals::new, Totals::add, Totals::merge);
+        }
+
+        writeReport(totals.applids);
+
+        System.out.format(
+                "%nTotal Transactions: %,d%n",
+                totals.txcount);
+
+        if (totals.nodictionary > 0)
+        {
+            System.out.format(
+                    "%nSkipped %,d records because no applicable dictionary was found.%n",
+                    totals.nodictionary);
+        }
+
+        if (Smf110Record.getCompressedByteCount() > 0)
+        {
+            System.out.format(
+                    "%nCompressed bytes %,d, decompressed bytes %,d, compression %.1f%%.%n",
+                    Smf110Record.getCompressedByteCount(),
+                    Smf110Record.getDecompressedByteCount(),
+                    (double)(Smf110Record.getDecompressedByteCount() - Smf110Record.getCompressedByteCount()) / Smf110Record.getDecompressedByteCount() * 100);
+        }
+
+        System.out.format("Run Time: %s%n", Duration.between(start, Instant.now()));
+    }
+
+    private static void writeReport(Map<String, Map<String, TransactionData>> applids)
+    {
+    	System.out.format("%-8s %-4s %15s %15s %15s %15s %15s %15s %15s %15s %15s%n%n",
+                "APPLID",
+                "TRAN",
+                "Count",
+                "Min Elapsed",
+                "Max Elapsed",
+                "Avg Elapsed",
+                "P50 Elapsed",
+                "P95 Elapsed",
+                "P99 Elapsed",
+                "Total CPU",
+                "Avg CPU");
+
+    	new TreeMap<>(applids).forEach((applid, transactions) ->
+    		new TreeMap<>(transactions).forEach((transaction, txInfo) ->
+	        	System.out.format("%-8s %-4s %,15d %15f %15f %15f %15f %15f %15f %15f %15f%n",
+	        			applid,
+	        			transaction,
+	        			txInfo.count,
+	        			txInfo.minElapsed,
+	        			txInfo.maxElapsed,
+	        			txInfo.avgElapsed(),
+	        			txInfo.elapsedHistogram.percentile(50),
+	        			txInfo.elapsedHistogram.percentile(95),
+	        			txInfo.elapsedHistogram.percentile(99),
+	        			txInfo.cpu,
+	        			txInfo.avgCpu())));
+    }
+
+    private static final CicsFieldProjection PROJECTION = new CicsFieldProjection(Field.USRCPUT);
+    private static final int USRCPUT = 0;
+
+    /**
+     * Results for the records processed by one thread. Each Totals
+     * object is only used by one thread at a time, so the Row can be
+     * reused and no locking is required.
+     */
+    private static class Totals
+    {
+    	public void add(SmfRecord smfRecord)
+    	{
+            var r110 = Smf110Record.from(smfRecord);
+            if (r110.haveDictionary())
+            {
+            	var transactions = applids.computeIfAbsent(
+            			r110.mnProductSection().smfmnprn(), x -> new HashMap<>());
+            	for (var txData : r110.performanceRecords())
+            	{
+            		txcount++;
+            		PROJECTION.read(txData, row);
+            		transactions.computeIfAbsent(row.tran(), x -> new TransactionData())
+            			.add(row);
+            	}
+            }
+            else
+            {
+            	nodictionary++;
+            }
+    	}
+
+    	public void merge(Totals other)
+    	{
+    		txcount += other.txcount;
+    		nodictionary += other.nodictionary;
+    		other.applids.forEach((applid, otherTransactions) ->
+    		{
+    			var transactions = applids.computeIfAbsent(applid, x -> new HashMap<>());
+    			otherTransactions.forEach((key, data) ->
+    				transactions.merge(key, data, TransactionData::merge));
+    		});
+    	}
+
+    	private final CicsFieldProjection.Row row = PROJECTION.newRow();
+    	Map<String, Map<String, TransactionData>> applids = new HashMap<>();
+    	long txcount = 0;
+    	long nodictionary = 0;
+    }
+
+    private static class TransactionData
+    {
+    	public void add(CicsFieldProjection.Row txData)
+    	{
+    		count++;
+    		double elapsed = txData.elapsedSeconds();
+    		totalElapsed += elapsed;
+    		minElapsed = Math.min(minElapsed, elapsed);
+    		maxElapsed = Math.max(maxElapsed, elapsed);
+    		elapsedHistogram.record(elapsed);
+    		cpu += txData.seconds(USRCPUT);
+    	}
+
+    	public TransactionData merge(TransactionData other)
+    	{
+    		count += other.count;
+    		totalElapsed += other.totalElapsed;
+    		minElapsed = Math.min(minElapsed, other.minElapsed);
+    		maxElapsed = Math.max(maxElapsed, other.maxElapsed);
+    		elapsedHistogram.merge(other.elapsedHistogram);
+    		cpu += other.cpu;
+    		return this;
+    	}
+
+    	long count = 0;
+    	double totalElapsed = 0;
+    	double minElapsed = Double.POSITIVE_INFINITY;
+    	double maxElapsed = Double.NEGATIVE_INFINITY;
+    	LatencyHistogram elapsedHistogram = new LatencyHistogram();
+    	double cpu = 0;
+
+    	double avgElapsed() { return totalElapsed / count; }
+    	double avgCpu() { return cpu / count ; }
+    }
+}
@@ -0,0 +1,174 @@
+import java.io.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import com.blackhillsoftware.smf.*;
+import com.blackhillsoftware.smf.cics.*;
+import com.blackhillsoftware.smf.cics.monitoring.*;
+import com.blackhillsoftware.smf.cics.monitoring.fields.*;
+
+/*
+ * Process CICS transactions like Cics1B, with the records decompressed
+ * by a ReadAhead on worker threads.
+ *
+ * The workers create the Smf110Record and access the performance records,
+ * which decompresses the record. The transactions are returned to the main
+ * thread in the original order and processed the same way as Cics1B.
+ */
+public class Cics1BReadAhead
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.out.println("Usage: Cics1BReadAhead <dictionary-name> <input-name> [threads] [read-ahead-mb]");
+            System.out.println("<input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");          
+            System.out.println("threads: number of decompression threads, default number of processors");
+            System.out.format("read-ahead-mb: maximum MB of SMF records read ahead before decompression, default %d%n",
+                    ReadAhead.DEFAULT_READ_AHEAD_BYTES / (1024 * 1024));
+            return;
+        }
+        
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long readAheadBytes = args.length > 3 ? Long.parseLong(args[3]) * 1024 * 1024 : ReadAhead.DEFAULT_READ_AHEAD_BYTES;
+        
+        var start = Instant.now();
+        
+        Map<TransactionKey, TransactionData> transactions = new HashMap<>();
+        
+        long nodictionary = 0;
+        long txcount = 0;
+        
+        Smf110Record.dictionariesFromName(args[0]);
+        
+        try (SmfRecordReader reader = SmfRecordReader.fromName(args[1])
+        		.include(110, 1);
+        	ReadAhead<Transactions> readAhead = new ReadAhead<>(reader, Cics1BReadAhead::prepare, threads, readAheadBytes))
+        {            
+            for (Transactions transactionsInRecord : readAhead)
+            {
+                if (transactionsInRecord != null)
+                {
+                	String applid = transactionsInRecord.applid();
+                	for (var txData : transactionsInRecord.transactions())
+                	{
+                		txcount++;
+                		String txName = txData.getField(Field.TRAN);
+                		var key = new TransactionKey(applid, txName);
+                		transactions.computeIfAbsent(key, x -> new TransactionData())
+                			.add(txData);
+                	}
+                }
+                else
+                {
+                	nodictionary++;
+                }
+            }            		
+            readAhead.printStatistics();
+        }
+        
+        writeReport(transactions);
+        
+        System.out.format(
+                "%nTotal Transactions: %,d%n", 
+                txcount);
+               
+        if (nodictionary > 0) 
+        {
+            System.out.format(
+                    "%nSkipped %,d records because no applicable dictionary was found.%n", 
+                    nodictionary);
+        }
+        
+        if (Smf110Record.getCompressedByteCount() > 0) 
+        {
+            System.out.format(
+                    "%nCompressed bytes %,d, decompressed bytes %,d, compression %.1f%%.%n", 
+                    Smf110Record.getCompressedByteCount(),
+                    Smf110Record.getDecompressedByteCount(),
+                    (double)(Smf110Record.getDecompressedByteCount() - Smf110Record.getCompressedByteCount()) / Smf110Record.getDecompressedByteCount() * 100);
+        }
+        
+        System.out.format("Run Time: %s%n", Duration.between(start, Instant.now()));
+    }
+    
+    /**
+     * Runs on the ReadAhead worker threads. Accessing the performance 
+     * records decompresses the record.
+     * @return the transactions, or null if there is no dictionary
+     */
+    private static Transactions prepare(SmfRecord smfRecord)
+    {
+        var r110 = Smf110Record.from(smfRecord);
+        if (r110.haveDictionary())
+        {
+            return new Transactions(r110.mnProductSection().smfmnprn(), r110.performanceRecords());
+        }
+        return null;
+    }
+    
+    private static record Transactions(String applid, List<PerformanceRecord> transactions) {};
+    
+    private static void writeReport(Map<TransactionKey, TransactionData> transactions)
+    {
+    	System.out.format("%-8s %-4s %15s %15s %15s %15s %15s %15s %15s %15s %15s%n%n", 
+                "APPLID", 
+                "TRAN", 
+                "Count", 
+                "Min Elapsed", 
+                "Max Elapsed", 
+                "Avg Elapsed",
+                "P50 Elapsed",
+                "P95 Elapsed",
+                "P99 Elapsed",
+                "Total CPU", 
+                "Avg CPU");
+    	
+    	transactions.entrySet().stream()
+	        .sorted(Map.Entry.comparingByKey(
+	                Comparator.comparing(TransactionKey::applid)
+	                    .thenComparing(TransactionKey::transaction)))
+	        .forEachOrdered(txInfo -> 
+	        {
+	        	System.out.format("%-8s %-4s %,15d %15f %15f %15f %15f %15f %15f %15f %15f%n",
+	        			txInfo.getKey().applid(),
+	        			txInfo.getKey().transaction(),
+	        			txInfo.getValue().count,
+	        			txInfo.getValue().minElapsed,
+	        			txInfo.getValue().maxElapsed,
+	        			txInfo.getValue().avgElapsed(),
+	        			txInfo.getValue().elapsedHistogram.percentile(50),
+	        			txInfo.getValue().elapsedHistogram.percentile(95),
+	        			txInfo.getValue().elapsedHistogram.percentile(99),
+	        			txInfo.getValue().cpu,
+	        			txInfo.getValue().avgCpu());        	
+	        });
+    }
+    
+    private static record TransactionKey(String applid, String transaction) {};
+    
+    private static class TransactionData
+    {
+    	public void add(PerformanceRecord txData)
+    	{
+    		count++;
+    		double elapsed = txData.elapsedSeconds();
+    		totalElapsed += elapsed;
+    		minElapsed = Math.min(minElapsed, elapsed);
+    		maxElapsed = Math.max(maxElapsed, elapsed);
+    		elapsedHistogram.record(elapsed);
+    		cpu += txData.getField(Field.USRCPUT).timerSeconds();    		
+    	}
+    	
+    	long count = 0;
+    	double totalElapsed = 0;
+    	double minElapsed = Double.POSITIVE_INFINITY;
+    	double maxElapsed = Double.NEGATIVE_INFINITY;
+    	LatencyHistogram elapsedHistogram = new LatencyHistogram();
+    	double cpu = 0;
+    	
+    	double avgElapsed() { return totalElapsed / count; } 
+    	double avgCpu() { return cpu / count ; }
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.blackhillsoftware.smf.cics.monitoring.*;
+import com.blackhillsoftware.smf.cics.monitoring.fields.*;
+
+/*
+ * Read a fixed set of fields from CICS performance records into
+ * primitive values.
+ *
+ * PerformanceRecord.getField(Field) finds the field in the dictionary
+ * for every transaction. CicsFieldProjection finds the dictionary
+ * entries for the requested clock fields once for each dictionary,
+ * and reads the values using the entries. Fields that are not in a
+ * dictionary (e.g. excluded in the MCT) read as zero.
+ *
+ * Values are read into a Row, which can be reused for every
+ * transaction. A Row must only be used by one thread at a time, so
+ * with parallel streams create a Row for each thread e.g. in the
+ * object used to accumulate the results.
+ *
+ *  CicsFieldProjection projection = new CicsFieldProjection(Field.USRCPUT, Field.TCIOWTT);
+ *  CicsFieldProjection.Row row = projection.newRow();
+ *  for (PerformanceRecord tx : r110.performanceRecords())
+ *  {
+ *      projection.read(tx, row);
+ *      double cpu = row.seconds(0);
+ *      ...
+ *  }
+ */
+public class CicsFieldProjection
+{
+    private final ClockField[] fields;
+    private final Map<Object, DictionaryEntry[]> resolved = new ConcurrentHashMap<>();
+
+    public CicsFieldProjection(ClockField... fields)
+    {
+        this.fields = fields.clone();
+    }
+
+    public Row newRow()
+    {
+        return new Row(fields.length);
+    }
+
+    /**
+     * Read the fields from a transaction into a row
+     * @param tx the transaction performance record
+     * @param row the row to receive the values. Values from the
+     * previous transaction are replaced.
+     */
+    public void read(PerformanceRecord tx, Row row)
+    {
+        Object dictionary = tx.getDictionary();
+        // most transactions use the same dictionary as the previous one
+        if (dictionary != row.dictionary)
+        {
+            row.entries = resolved.computeIfAbsent(dictionary, key -> resolve(tx));
+            row.dictionary = dictionary;
+        }
+
+        row.tran = tx.getField(Field.TRAN);
+        row.elapsed = tx.elapsedSeconds();
+        for (int i = 0; i < row.entries.length; i++)
+        {
+            DictionaryEntry entry = row.entries[i];
+            if (entry != null)
+            {
+                CicsClock clock = (CicsClock) tx.getField(entry);
+                row.seconds[i] = clock.timerSeconds();
+                row.counts[i] = clock.count();
+            }
+            else
+            {
+                row.seconds[i] = 0;
+                row.counts[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Find the dictionary entry for each field in the dictionary
+     * for a transaction
+     * @return the entries in the same order as the fields, with null
+     * for fields not in the dictionary
+     */
+    private DictionaryEntry[] resolve(PerformanceRecord tx)
+    {
+        DictionaryEntry[] entries = new DictionaryEntry[fields.length];
+        for (DictionaryEntry entry : tx.getDictionary().entries())
+        {
+            for (int i = 0; i < fields.length; i++)
+            {
+                if (entries[i] == null && fields[i].equals(entry.field()))
+                {
+                    entries[i] = entry;
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Field values for one transaction. The clock values are indexed
+     * in the same order as the fields passed to the CicsFieldProjection.
+     */
+    public static class Row
+    {
+        private Row(int fieldCount)
+        {
+            seconds = new double[fieldCount];
+            counts = new long[fieldCount];
+        }
+
+        private Object dictionary = null;
+        private DictionaryEntry[] entries;
+
+        private String tran;
+        private double elapsed;
+        private final double[] seconds;
+        private final long[] counts;
+
+        public String tran() { return tran; }
+        public double elapsedSeconds() { return elapsed; }
+        public double seconds(int field) { return seconds[field]; }
+        public long count(int field) { return counts[field]; }
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+/*
+ * A histogram of response times with logarithmic buckets, used to
+ * calculate percentiles without keeping every value.
+ *
+ * Values are recorded in microseconds. Values below 128 microseconds
+ * are counted exactly. Above that, each power of 2 is divided into 64
+ * buckets, so a percentile is accurate to within 1/64 (about 1.6%)
+ * of the value. Values of 2^36 microseconds (about 19 hours) or
+ * more are counted in the highest bucket.
+ *
+ * The bucket array grows to the highest bucket used, up to 1,984
+ * buckets (about 16KB). Histograms can be merged, e.g. histograms
+ * collected by different threads.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = (1L << 36) - 1;
+    private static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    private long[] counts = new long[2 * SUB_BUCKETS];
+    private long totalCount = 0;
+    private long maxValue = 0;
+
+    /**
+     * Record a value
+     * @param seconds the response time in seconds
+     */
+    public void record(double seconds)
+    {
+        long micros = Math.min(MAX_VALUE, Math.max(0, Math.round(seconds * 1_000_000)));
+        int index = bucketIndex(micros);
+        if (index >= counts.length)
+        {
+            counts = Arrays.copyOf(counts, Math.min(BUCKETS, Math.max(index + 1, counts.length * 2)));
+        }
+        counts[index]++;
+        totalCount++;
+        maxValue = Math.max(maxValue, micros);
+    }
+
+    /**
+     * Add the values from another histogram to this histogram
+     * @param other the other histogram
+     * @return this histogram
+     */
+    public LatencyHistogram merge(LatencyHistogram other)
+    {
+        if (other.counts.length > counts.length)
+        {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++)
+        {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        maxValue = Math.max(maxValue, other.maxValue);
+        return this;
+    }
+
+    public long count()
+    {
+        return totalCount;
+    }
+
+    /**
+     * Get the value at a percentile. The value returned is the highest
+     * value in the bucket containing the percentile, but not more than
+     * the highest value recorded.
+     * @param percentile the percentile e.g. 99
+     * @return the value in seconds, or 0 if no values have been recorded
+     */
+    public double percentile(double percentile)
+    {
+        if (totalCount == 0)
+        {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            cumulative += counts[i];
+            if (cumulative >= target)
+            {
+                return Math.min(highestValue(i), maxValue) / 1_000_000.0;
+            }
+        }
+        return maxValue / 1_000_000.0;
+    }
+
+    private static int bucketIndex(long micros)
+    {
+        if (micros < 2 * SUB_BUCKETS)
+        {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * The highest value that is counted in a bucket
+     */
+    private static long highestValue(int index)
+    {
+        if (index < 2 * SUB_BUCKETS)
+        {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
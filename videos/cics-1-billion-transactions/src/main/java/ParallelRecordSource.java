@@ -0,0 +1,269 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.*;
+
+import com.blackhillsoftware.smf.*;
+
+/*
+ * A source of SMF records for parallel streams.
+ *
+ * reader.stream().parallel() splits the input using the JDK's default
+ * heuristics for a sequential source: each split copies records into
+ * an array, and the arrays grow larger with each split up to 33 million
+ * entries. Threads can wait for the next split to be read, and memory
+ * use depends on how far the splits have grown.
+ *
+ * ParallelRecordSource reads records from the SmfRecordReader on its own
+ * thread and places them in fixed size batches on a bounded queue.
+ * The stream is split a limited number of times (4 times the common
+ * pool parallelism), and each split takes batches from the queue as it
+ * needs them until the input ends. The reading continues while the
+ * batches are processed, at most (queue size + threads) batches are
+ * in memory at once, and a collect() creates one result container for
+ * each split rather than one for each batch.
+ *
+ * Batches are taken in the order they were read but processed in any
+ * order, so the stream is unordered.
+ *
+ * Usage:
+ *
+ *  try (SmfRecordReader reader = SmfRecordReader.fromName(name);
+ *       ParallelRecordSource source = new ParallelRecordSource(reader))
+ *  {
+ *      source.stream()
+ *          ...
+ *  }
+ */
+public class ParallelRecordSource implements AutoCloseable
+{
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    // marks the end of the input on the queue
+    private static final SmfRecord[] END = new SmfRecord[0];
+
+    private final BlockingQueue<SmfRecord[]> queue;
+    private final Thread readerThread;
+    private volatile Throwable readerException = null;
+    private volatile boolean closed = false;
+    private volatile boolean inputFinished = false;
+    private final AtomicInteger splitsLeft =
+            new AtomicInteger(ForkJoinPool.getCommonPoolParallelism() * 4);
+    private boolean streamCreated = false;
+
+    public ParallelRecordSource(SmfRecordReader reader)
+    {
+        this(reader, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Create a ParallelRecordSource and start reading records
+     * @param reader the SmfRecordReader. The reader is not closed
+     * by the ParallelRecordSource.
+     * @param batchSize the number of records in each batch
+     * @param queueSize the maximum number of batches waiting to be processed
+     */
+    public ParallelRecordSource(SmfRecordReader reader, int batchSize, int queueSize)
+    {
+        if (batchSize < 1)
+        {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+        if (queueSize < 1)
+        {
+            throw new IllegalArgumentException("Queue size must be at least 1: " + queueSize);
+        }
+        queue = new ArrayBlockingQueue<>(queueSize);
+        readerThread = new Thread(() -> readRecords(reader, batchSize), "ParallelRecordSource");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    /**
+     * Create a parallel stream of the records. A ParallelRecordSource
+     * can only be streamed once.
+     * @return an unordered parallel Stream of SmfRecord
+     */
+    public synchronized Stream<SmfRecord> stream()
+    {
+        if (streamCreated)
+        {
+            throw new IllegalStateException("Stream has already been created");
+        }
+        streamCreated = true;
+        return StreamSupport.stream(new BatchSpliterator(), true);
+    }
+
+    /**
+     * Stop reading records. Any records not yet processed are discarded.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        readerThread.interrupt();
+        try
+        {
+            readerThread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        // The reader stops without queueing the end marker. Threads
+        // still processing the stream, e.g. if another thread failed,
+        // would wait for it forever.
+        queue.clear();
+        queue.offer(END);
+    }
+
+    private void readRecords(SmfRecordReader reader, int batchSize)
+    {
+        try
+        {
+            List<SmfRecord> batch = new ArrayList<>(batchSize);
+            for (SmfRecord record : reader)
+            {
+                if (closed) return;
+                batch.add(record);
+                if (batch.size() == batchSize)
+                {
+                    queue.put(batch.toArray(new SmfRecord[batchSize]));
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty())
+            {
+                queue.put(batch.toArray(new SmfRecord[batch.size()]));
+            }
+            queue.put(END);
+        }
+        catch (InterruptedException e)
+        {
+            // closed
+        }
+        catch (Throwable e)
+        {
+            readerException = e;
+            // Make room for the end marker, the records won't be used
+            queue.clear();
+            queue.offer(END);
+        }
+    }
+
+    /**
+     * Get the next batch, waiting for it to be read if necessary.
+     * @return the next batch, or null at the end of the input
+     */
+    private SmfRecord[] nextBatch()
+    {
+        if (inputFinished)
+        {
+            return endOfInput();
+        }
+        SmfRecord[] batch;
+        try
+        {
+            batch = queue.take();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted waiting for SMF records");
+        }
+        if (batch == END)
+        {
+            inputFinished = true;
+            // leave the marker for any other threads waiting
+            queue.offer(END);
+            return endOfInput();
+        }
+        return batch;
+    }
+
+    private SmfRecord[] endOfInput()
+    {
+        if (readerException != null)
+        {
+            throw new RuntimeException("Error reading SMF records", readerException);
+        }
+        return null;
+    }
+
+    /**
+     * Spliterator that takes batches from the queue until the end of
+     * the input. The size is unknown, so the stream framework continues
+     * to split while threads are available, up to the split limit.
+     */
+    private class BatchSpliterator implements Spliterator<SmfRecord>
+    {
+        // the batch being processed
+        private Spliterator<SmfRecord> current = null;
+        private boolean finished = false;
+
+        @Override
+        public Spliterator<SmfRecord> trySplit()
+        {
+            if (finished || inputFinished || splitsLeft.getAndDecrement() <= 0)
+            {
+                return null;
+            }
+            return new BatchSpliterator();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super SmfRecord> action)
+        {
+            while (current == null || !current.tryAdvance(action))
+            {
+                current = nextSpliterator();
+                if (current == null)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super SmfRecord> action)
+        {
+            Spliterator<SmfRecord> batch = current;
+            current = null;
+            if (batch == null)
+            {
+                batch = nextSpliterator();
+            }
+            while (batch != null)
+            {
+                batch.forEachRemaining(action);
+                batch = nextSpliterator();
+            }
+        }
+
+        private Spliterator<SmfRecord> nextSpliterator()
+        {
+            SmfRecord[] batch = finished ? null : nextBatch();
+            if (batch == null)
+            {
+                finished = true;
+                return null;
+            }
+            return Spliterators.spliterator(batch, characteristics());
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return finished && current == null ? 0 : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.blackhillsoftware.smf.*;
+
+/*
+ * Prepare SMF records on a pool of worker threads ahead of the thread
+ * that processes them, and deliver the results in the original order.
+ *
+ * Compressed CICS records are decompressed when a section other than
+ * the product section is first accessed, on the thread that accesses
+ * it. If the prepare function accesses the performance records, e.g.
+ *
+ *  record -> Smf110Record.from(record).performanceRecords()
+ *
+ * the decompression is done by the workers, and a single thread
+ * processing the results is limited by the I/O rather than by
+ * decompression.
+ *
+ * A separate thread reads the records and submits them to the workers.
+ * Reading pauses when the records that have been read but not yet
+ * returned by next() reach the read ahead limit. The limit is measured
+ * in SMF record bytes as read, i.e. before decompression. It is not a
+ * limit on memory: the prepared results for those records are usually
+ * much larger, e.g. a compressed CICS record can expand 5 to 10 times
+ * and the PerformanceRecord objects add more. Allow for the expansion
+ * when choosing the limit.
+ *
+ * Usage:
+ *
+ *  try (SmfRecordReader reader = SmfRecordReader.fromName(name);
+ *       ReadAhead<List<PerformanceRecord>> readAhead = new ReadAhead<>(reader, prepare))
+ *  {
+ *      for (List<PerformanceRecord> transactions : readAhead)
+ *      ...
+ */
+public class ReadAhead<T> implements Iterable<T>, AutoCloseable
+{
+    public static final long DEFAULT_READ_AHEAD_BYTES = 64 * 1024 * 1024;
+
+    private static final int KB = 1024;
+    // a SMF record is less than 32K, so the limit must allow at least 1 record
+    private static final long MINIMUM_READ_AHEAD = 32 * KB;
+
+    // an entry on the queue for each record, in the order they were read
+    private static record Entry<T>(Future<T> result, int permits) {}
+    private static final Entry<?> END = new Entry<>(null, 0);
+
+    private final Function<SmfRecord, T> prepare;
+    private final int threads;
+    private final ExecutorService workers;
+    private final Thread readerThread;
+    private final BlockingQueue<Entry<T>> queue = new LinkedBlockingQueue<>();
+    // input bytes read ahead, in KB
+    private final Semaphore readAheadLimit;
+
+    private volatile Throwable readerException = null;
+    private boolean iteratorCreated = false;
+
+    private final AtomicLong prepareNanos = new AtomicLong();
+    private long records = 0;
+    private long bytes = 0;
+    private final long startNanos = System.nanoTime();
+    private long endNanos = 0;
+
+    public ReadAhead(Iterable<SmfRecord> source, Function<SmfRecord, T> prepare)
+    {
+        this(source, prepare, Runtime.getRuntime().availableProcessors(), DEFAULT_READ_AHEAD_BYTES);
+    }
+
+    /**
+     * Create a ReadAhead and start reading records
+     * @param source the records e.g. a SmfRecordReader. The source is not
+     * closed by the ReadAhead.
+     * @param prepare the function run on the worker threads for each record
+     * @param threads the number of worker threads
+     * @param readAheadBytes the maximum number of bytes of SMF records
+     * read but not yet returned, before decompression
+     */
+    public ReadAhead(Iterable<SmfRecord> source, Function<SmfRecord, T> prepare,
+            int threads, long readAheadBytes)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("Threads must be at least 1: " + threads);
+        }
+        if (readAheadBytes < MINIMUM_READ_AHEAD)
+        {
+            throw new IllegalArgumentException("Read ahead bytes must be at least " + MINIMUM_READ_AHEAD + ": " + readAheadBytes);
+        }
+        this.prepare = prepare;
+        this.threads = threads;
+        readAheadLimit = new Semaphore((int) Math.min(Integer.MAX_VALUE, readAheadBytes / KB));
+        workers = Executors.newFixedThreadPool(threads, runnable ->
+        {
+            Thread thread = new Thread(runnable, "ReadAhead worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        readerThread = new Thread(() -> readRecords(source), "ReadAhead reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    private void readRecords(Iterable<SmfRecord> source)
+    {
+        try
+        {
+            for (SmfRecord record : source)
+            {
+                int permits = (record.recordLength() + KB - 1) / KB;
+                readAheadLimit.acquire(permits);
+                queue.add(new Entry<>(workers.submit(() -> timedPrepare(record)), permits));
+                records++;
+                bytes += record.recordLength();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // closed
+        }
+        catch (Throwable e)
+        {
+            readerException = e;
+        }
+        finally
+        {
+            endOfInput();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void endOfInput()
+    {
+        queue.add((Entry<T>) END);
+    }
+
+    private T timedPrepare(SmfRecord record)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return prepare.apply(record);
+        }
+        finally
+        {
+            prepareNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Iterate over the prepared results, in the order the records were
+     * read. A ReadAhead can only be iterated once.
+     */
+    @Override
+    public synchronized Iterator<T> iterator()
+    {
+        if (iteratorCreated)
+        {
+            throw new IllegalStateException("Iterator has already been created");
+        }
+        iteratorCreated = true;
+        return new Iterator<T>()
+        {
+            private Entry<T> next = null;
+
+            @Override
+            public boolean hasNext()
+            {
+                if (next == null)
+                {
+                    try
+                    {
+                        next = queue.take();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException("Interrupted waiting for SMF records");
+                    }
+                }
+                if (next == END)
+                {
+                    // leave END for any later calls
+                    queue.add(next);
+                    next = null;
+                    if (endNanos == 0)
+                    {
+                        endNanos = System.nanoTime();
+                    }
+                    if (readerException != null)
+                    {
+                        throw new RuntimeException("Error reading SMF records", readerException);
+                    }
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public T next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                Entry<T> entry = next;
+                next = null;
+                try
+                {
+                    return entry.result().get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted waiting for SMF records");
+                }
+                catch (ExecutionException e)
+                {
+                    throw new RuntimeException("Error preparing SMF record", e.getCause());
+                }
+                finally
+                {
+                    readAheadLimit.release(entry.permits());
+                }
+            }
+        };
+    }
+
+    /**
+     * Print the number of records and bytes read, the elapsed time, and
+     * the time used by the worker threads. Call after all the results
+     * have been processed.
+     */
+    public void printStatistics()
+    {
+        double elapsed = ((endNanos != 0 ? endNanos : System.nanoTime()) - startNanos) / 1e9;
+        double prepare = prepareNanos.get() / 1e9;
+        System.out.format("%nRead ahead: %,d records, %,d bytes in %.3f seconds, %.1f MB/s%n",
+                records, bytes, elapsed, bytes / elapsed / (1024 * 1024));
+        System.out.format("%d worker threads, %.3f seconds preparing records, %.1f MB/s per thread%n",
+                threads, prepare, prepare > 0 ? bytes / prepare / (1024 * 1024) : 0);
+    }
+
+    /**
+     * Stop reading records and stop the worker threads.
+     */
+    @Override
+    public void close()
+    {
+        readerThread.interrupt();
+        workers.shutdownNow();
+        try
+        {
+            readerThread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.*;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+import com.blackhillsoftware.smf.*;
+import com.blackhillsoftware.smf.cics.*;
+import com.blackhillsoftware.smf.cics.monitoring.*;
+import com.blackhillsoftware.smf.cics.monitoring.fields.*;
+
+/**
+ *  This sample converts CICS transaction SMF data to a
+ *  TransactionColumns file, which can be queried repeatedly
+ *  without reading and decompressing the SMF records again.
+ *
+ *  Only the fields listed below are copied. Add fields
+ *  required by your queries to the lists.
+ *
+ *  This program and QueryColumns use the TransactionColumns class,
+ *  so they need to be compiled together rather than run as single
+ *  file source code programs.
+ */
+public class ConvertToColumns {
+
+    // string fields to copy
+    private static final List<StringField> STRING_FIELDS = Arrays.asList(
+            Field.TRAN,
+            Field.TERM,
+            Field.USERID,
+            Field.PGMNAME);
+
+    // clock fields to copy, as the time in seconds
+    private static final List<ClockField> CLOCK_FIELDS = Arrays.asList(
+            Field.USRCPUT,
+            Field.USRDISPT,
+            Field.DISPWTT,
+            Field.SUSPTIME);
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 3)
+        {
+            System.out.println("Usage: ConvertToColumns <dictionary-name> <output-file> <input-name> <input-name2> ...");
+            System.out.println("<input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");
+            return;
+        }
+
+        // read CICS dictionary records from separate file
+        Smf110Record.dictionariesFromName(args[0]);
+
+        List<TransactionColumns.Column> columns = new ArrayList<>();
+        columns.add(TransactionColumns.Column.string("APPLID"));
+        for (StringField field : STRING_FIELDS)
+        {
+            columns.add(TransactionColumns.Column.string(field.toString()));
+        }
+        columns.add(TransactionColumns.Column.timestamp("START"));
+        columns.add(TransactionColumns.Column.timestamp("STOP"));
+        for (ClockField field : CLOCK_FIELDS)
+        {
+            columns.add(TransactionColumns.Column.clock(field.toString()));
+        }
+
+        long count = 0;
+        try (TransactionColumns.Writer writer = TransactionColumns.create(args[1], columns))
+        {
+            for (int i = 2; i < args.length; i++)
+            {
+                try (SmfRecordReader reader = SmfRecordReader.fromName(args[i])
+                        .include(110,1)) // include only type 110 subtype 1
+                {
+                    for (SmfRecord record : reader)
+                    {
+                        Smf110Record r110 = Smf110Record.from(record);
+                        if (!r110.haveDictionary())
+                        {
+                            continue;
+                        }
+                        String applid = r110.mnProductSection().smfmnprn();
+                        for (PerformanceRecord tx : r110.performanceRecords())
+                        {
+                            // columns are numbered in the order they were added
+                            int column = 0;
+                            writer.setString(column++, applid);
+                            for (StringField field : STRING_FIELDS)
+                            {
+                                writer.setString(column++, tx.getField(field));
+                            }
+                            writer.setTimestamp(column++, micros(tx.getField(Field.START)));
+                            writer.setTimestamp(column++, micros(tx.getField(Field.STOP)));
+                            for (ClockField field : CLOCK_FIELDS)
+                            {
+                                writer.setClock(column++, tx.getField(field).timerSeconds());
+                            }
+                            writer.endRow();
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        System.out.format("%,d transactions written to %s%n", count, args[1]);
+    }
+
+    private static long micros(ZonedDateTime time)
+    {
+        return time.toEpochSecond() * 1_000_000 + time.getNano() / 1000;
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import com.blackhillsoftware.smf.*;
+import com.blackhillsoftware.smf.cics.*;
+import com.blackhillsoftware.smf.cics.monitoring.*;
+import com.blackhillsoftware.smf.cics.monitoring.fields.*;
+
+/**
+ *  This sample demonstrates Querying CICS transaction SMF data
+ *  from several inputs, e.g. a dump or logstream for each CICS
+ *  region, and listing transactions from a specific terminal in
+ *  order of start time.
+ *
+ *  Query05 sorts the transactions, which means that every selected
+ *  transaction is kept in memory until all the input has been read.
+ *  This sample merges the inputs instead. Transactions in each input
+ *  are approximately in start time order, because they are written
+ *  when the transaction ends. Transactions are held in a buffer until
+ *  every input has reached a time later than the transaction start by
+ *  more than the reorder window, then written in order. The buffer
+ *  only needs to hold the transactions within the reorder window so
+ *  the query can process any amount of data.
+ *
+ *  A transaction that runs longer than the reorder window can start
+ *  before transactions that have already been written. Those
+ *  transactions are written when they are found and counted as
+ *  out of order.
+ */
+public class Query06MergeByStartTime {
+
+    // transactions in an input can be out of start time order
+    // by up to this duration
+    private static final Duration REORDER_WINDOW = Duration.ofMinutes(5);
+
+    // maximum transactions held in the buffer
+    private static final int MAX_BUFFERED = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 3)
+        {
+            System.out.println("Usage: Query06MergeByStartTime <dictionary-name> <term> <input-name> <input-name2> ...");
+            System.out.println("<input-name> can be filename, //DD:DDNAME or //'DATASET.NAME'");
+            return;
+        }
+
+        // read CICS dictionary records from separate file
+        Smf110Record.dictionariesFromName(args[0]);
+
+        String term = args[1];
+
+        List<SmfRecordReader> readers = new ArrayList<>();
+        try
+        {
+            List<Iterator<PerformanceRecord>> inputs = new ArrayList<>();
+            for (int i = 2; i < args.length; i++)
+            {
+                SmfRecordReader reader = SmfRecordReader.fromName(args[i])
+                        .include(110,1); // include only type 110 subtype 1
+                readers.add(reader);
+
+                // select the transactions from each input before they are
+                // merged, so only the selected transactions are buffered
+                inputs.add(reader.stream()
+                    .map(record -> Smf110Record.from(record))
+                    .filter(r110 -> r110.haveDictionary())
+                    .map(r110 -> r110.performanceRecords())
+                    .flatMap(List::stream)
+
+                    // filter by TERM
+                    .filter(tx -> tx.getField(Field.TERM).equals(term))
+                    .iterator());
+            }
+
+            StartTimeMerge merge = new StartTimeMerge(inputs, REORDER_WINDOW, MAX_BUFFERED);
+            while (merge.hasNext())
+            {
+                // print values
+                System.out.println(merge.next());
+            }
+
+            System.out.format("%nMaximum transactions buffered: %,d, out of order: %,d%n",
+                    merge.getMaxBuffered(),
+                    merge.getOutOfOrder());
+        }
+        finally
+        {
+            for (SmfRecordReader reader : readers)
+            {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Merge transactions from several inputs in START time order,
+     * where each input is approximately in START order.
+     */
+    private static class StartTimeMerge implements Iterator<PerformanceRecord>
+    {
+        private final List<Input> inputs;
+        private final Duration window;
+        private final int maxBuffered;
+        private final PriorityQueue<Transaction> buffer =
+                new PriorityQueue<>(Comparator.comparing((Transaction tx) -> tx.start)
+                        .thenComparingLong(tx -> tx.sequence));
+
+        private long sequence = 0;
+        private Instant lastStart = Instant.MIN;
+        private long outOfOrder = 0;
+        private int maxBufferedSeen = 0;
+
+        StartTimeMerge(List<Iterator<PerformanceRecord>> inputs, Duration window, int maxBuffered)
+        {
+            this.inputs = inputs.stream()
+                    .map(Input::new)
+                    .collect(Collectors.toList());
+            this.window = window;
+            this.maxBuffered = maxBuffered;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            fill();
+            return !buffer.isEmpty();
+        }
+
+        @Override
+        public PerformanceRecord next()
+        {
+            fill();
+            Transaction next = buffer.poll();
+            if (next == null)
+            {
+                throw new NoSuchElementException();
+            }
+            if (next.start.isBefore(lastStart))
+            {
+                outOfOrder++;
+            }
+            else
+            {
+                lastStart = next.start;
+            }
+            return next.tx;
+        }
+
+        long getOutOfOrder()
+        {
+            return outOfOrder;
+        }
+
+        int getMaxBuffered()
+        {
+            return maxBufferedSeen;
+        }
+
+        /**
+         * Read from the inputs until the first transaction in the
+         * buffer can be written, the inputs are finished or the
+         * buffer is full.
+         */
+        private void fill()
+        {
+            while (buffer.size() < maxBuffered)
+            {
+                // read from the input that is furthest behind, so the
+                // inputs advance together
+                Input slowest = null;
+                for (Input input : inputs)
+                {
+                    if (!input.finished
+                            && (slowest == null || input.latest.isBefore(slowest.latest)))
+                    {
+                        slowest = input;
+                    }
+                }
+                if (slowest == null)
+                {
+                    return; // all finished
+                }
+                if (!buffer.isEmpty()
+                        && slowest.latest.isAfter(Instant.MIN)
+                        && !buffer.peek().start.isAfter(slowest.latest.minus(window)))
+                {
+                    // no input can have an earlier transaction to come
+                    return;
+                }
+                if (slowest.transactions.hasNext())
+                {
+                    PerformanceRecord tx = slowest.transactions.next();
+                    Instant start = tx.getField(Field.START).toInstant();
+                    buffer.add(new Transaction(tx, start, sequence++));
+                    if (start.isAfter(slowest.latest))
+                    {
+                        slowest.latest = start;
+                    }
+                    maxBufferedSeen = Math.max(maxBufferedSeen, buffer.size());
+                }
+                else
+                {
+                    slowest.finished = true;
+                }
+            }
+        }
+
+        private static class Input
+        {
+            Input(Iterator<PerformanceRecord> transactions)
+            {
+                this.transactions = transactions;
+            }
+
+            final Iterator<PerformanceRecord> transactions;
+            // the latest start time read from this input
+            Instant latest = Instant.MIN;
+            boolean finished = false;
+        }
+
+        private static class Transaction
+        {
+            Transaction(PerformanceRecord tx, Instant start, long sequence)
+            {
+                this.tx = tx;
+                this.start = start;
+                this.sequence = sequence;
+            }
+
+            final PerformanceRecord tx;
+            final Instant start;
+            // keep transactions with the same start time in the order they were read
+            final long sequence;
+        }
+    }
+}
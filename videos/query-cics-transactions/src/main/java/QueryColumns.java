@@ -0,0 +1,88 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ *  This sample demonstrates Querying a TransactionColumns file
+ *  created by ConvertToColumns.
+ *
+ *  The queries are similar to Query01ElapsedTime and
+ *  Query04CountingAndSumming: count the transactions that exceeded
+ *  a specified elapsed time, and count transactions and sum USRCPUT
+ *  for each transaction name.
+ *
+ *  Only the columns used by the query are read from the file.
+ *  Transactions are grouped using the transaction name code, so
+ *  the names are only decoded for the results.
+ */
+public class QueryColumns {
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2)
+        {
+            System.out.println("Usage: QueryColumns <columns-file> <applid>");
+            return;
+        }
+
+        String applid = args[1];
+        double elapsedThreshold = 1.5;
+
+        long start = System.nanoTime();
+
+        long count = 0;
+        long overThreshold = 0;
+        // count and USRCPUT by TRAN code
+        Map<Integer, long[]> counts = new HashMap<>();
+        Map<Integer, double[]> cpu = new HashMap<>();
+
+        try (TransactionColumns.Reader reader = TransactionColumns.open(args[0],
+                "APPLID", "TRAN", "START", "STOP", "USRCPUT"))
+        {
+            int applidColumn = reader.column("APPLID");
+            int tranColumn = reader.column("TRAN");
+            int startColumn = reader.column("START");
+            int stopColumn = reader.column("STOP");
+            int cpuColumn = reader.column("USRCPUT");
+
+            while (reader.nextBlock())
+            {
+                for (int row = 0; row < reader.size(); row++)
+                {
+                    if (!reader.string(applidColumn, row).equals(applid))
+                    {
+                        continue;
+                    }
+                    count++;
+
+                    double elapsed = (reader.timestamp(stopColumn, row)
+                            - reader.timestamp(startColumn, row)) / 1_000_000.0;
+                    if (elapsed > elapsedThreshold)
+                    {
+                        overThreshold++;
+                    }
+
+                    int tran = reader.code(tranColumn, row);
+                    counts.computeIfAbsent(tran, key -> new long[1])[0]++;
+                    cpu.computeIfAbsent(tran, key -> new double[1])[0] += reader.clock(cpuColumn, row);
+                }
+            }
+
+            // sort by count descending and print results
+            List<Integer> trans = new ArrayList<>(counts.keySet());
+            trans.sort(Comparator.comparingLong((Integer tran) -> counts.get(tran)[0]).reversed());
+
+            System.out.format("%-8s %12s %12s%n", "TRAN", "Count", "USRCPUT");
+            for (Integer tran : trans)
+            {
+                System.out.format("%-8s %,12d %12.3f%n",
+                        reader.decode(tranColumn, tran),
+                        counts.get(tran)[0],
+                        cpu.get(tran)[0]);
+            }
+        }
+
+        System.out.format("%n%,d transactions for %s, %,d with elapsed time > %.1f seconds%n",
+                count, applid, overThreshold, elapsedThreshold);
+        System.out.format("Query time: %.3f seconds%n", (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,473 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ *  A file of CICS transaction data stored by column, so repeated
+ *  queries can read the values they need without reading and
+ *  decoding the SMF records again.
+ *
+ *  A file has a list of columns, each with a name and type:
+ *  <ul>
+ *  <li>STRING columns e.g. APPLID, TRAN are stored as an int code
+ *  for each row. The strings are stored once, in the block where
+ *  they first appear.</li>
+ *  <li>TIMESTAMP columns e.g. START, STOP are stored as microseconds
+ *  since 1970-01-01 UTC.</li>
+ *  <li>CLOCK columns e.g. USRCPUT are stored as the clock time in
+ *  seconds.</li>
+ *  </ul>
+ *  Rows are written in blocks. Each column in a block is preceded by
+ *  its length, so a reader can skip columns that are not required.
+ *
+ *  Create a file using a {@link Writer}, e.g. using ConvertToColumns.
+ *  Read it using a {@link Reader}:
+ *  <pre>
+ *  try (TransactionColumns.Reader reader = TransactionColumns.open(name, "TRAN", "USRCPUT"))
+ *  {
+ *      int tran = reader.column("TRAN");
+ *      int cpu = reader.column("USRCPUT");
+ *      while (reader.nextBlock())
+ *      {
+ *          for (int row = 0; row < reader.size(); row++)
+ *          {
+ *              ... reader.string(tran, row) ... reader.clock(cpu, row) ...
+ *  </pre>
+ */
+public class TransactionColumns
+{
+    private static final String MAGIC = "CICSCOLS";
+    private static final int VERSION = 1;
+    private static final int BLOCK_ROWS = 64 * 1024;
+
+    public enum Type { STRING, TIMESTAMP, CLOCK }
+
+    /**
+     * A column name and type
+     */
+    public static class Column
+    {
+        private Column(String name, Type type)
+        {
+            this.name = name;
+            this.type = type;
+        }
+
+        public static Column string(String name) { return new Column(name, Type.STRING); }
+        public static Column timestamp(String name) { return new Column(name, Type.TIMESTAMP); }
+        public static Column clock(String name) { return new Column(name, Type.CLOCK); }
+
+        public String name() { return name; }
+        public Type type() { return type; }
+
+        private final String name;
+        private final Type type;
+    }
+
+    /**
+     * Create a new file
+     * @param name the file name
+     * @param columns the columns in the file
+     * @return a Writer to write rows to the file
+     * @throws IOException if the file can't be created
+     */
+    public static Writer create(String name, List<Column> columns) throws IOException
+    {
+        return new Writer(name, columns);
+    }
+
+    /**
+     * Open a file to read
+     * @param name the file name
+     * @param columnNames the columns to read. Other columns are skipped.
+     * @return a Reader
+     * @throws IOException if the file can't be read
+     */
+    public static Reader open(String name, String... columnNames) throws IOException
+    {
+        return new Reader(name, columnNames);
+    }
+
+    /**
+     * Writes rows to a file. Set the value for each column, then call
+     * endRow(). Values that are not set are empty strings or zero.
+     */
+    public static class Writer implements Closeable
+    {
+        private final DataOutputStream out;
+        private final List<Column> columns;
+
+        // values for the current block, by column
+        private final int[][] codes;
+        private final long[][] longs;
+        private final double[][] doubles;
+        private int rows = 0;
+
+        // string codes for STRING columns, and strings not yet written
+        private final List<Map<String, Integer>> stringCodes = new ArrayList<>();
+        private final List<List<String>> newStrings = new ArrayList<>();
+
+        private Writer(String name, List<Column> columns) throws IOException
+        {
+            this.columns = new ArrayList<>(columns);
+            codes = new int[columns.size()][];
+            longs = new long[columns.size()][];
+            doubles = new double[columns.size()][];
+            for (int i = 0; i < columns.size(); i++)
+            {
+                switch (columns.get(i).type())
+                {
+                case STRING:
+                    codes[i] = new int[BLOCK_ROWS];
+                    break;
+                case TIMESTAMP:
+                    longs[i] = new long[BLOCK_ROWS];
+                    break;
+                case CLOCK:
+                    doubles[i] = new double[BLOCK_ROWS];
+                    break;
+                }
+                stringCodes.add(new HashMap<>());
+                newStrings.add(new ArrayList<>());
+            }
+
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(name), 1024 * 1024));
+            out.writeBytes(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(columns.size());
+            for (Column column : columns)
+            {
+                out.writeByte(column.type().ordinal());
+                out.writeUTF(column.name());
+            }
+            clearRow();
+        }
+
+        public void setString(int column, String value)
+        {
+            codes[column][rows] = stringCodes.get(column).computeIfAbsent(value, key ->
+            {
+                newStrings.get(column).add(key);
+                return stringCodes.get(column).size();
+            });
+        }
+
+        /**
+         * Set a timestamp value
+         * @param column the column index
+         * @param micros microseconds since 1970-01-01 UTC
+         */
+        public void setTimestamp(int column, long micros)
+        {
+            longs[column][rows] = micros;
+        }
+
+        /**
+         * Set a clock value
+         * @param column the column index
+         * @param seconds the clock time in seconds
+         */
+        public void setClock(int column, double seconds)
+        {
+            doubles[column][rows] = seconds;
+        }
+
+        public void endRow() throws IOException
+        {
+            rows++;
+            if (rows == BLOCK_ROWS)
+            {
+                writeBlock();
+            }
+            clearRow();
+        }
+
+        private void clearRow()
+        {
+            for (int i = 0; i < columns.size(); i++)
+            {
+                switch (columns.get(i).type())
+                {
+                case STRING:
+                    setString(i, "");
+                    break;
+                case TIMESTAMP:
+                    longs[i][rows] = 0;
+                    break;
+                case CLOCK:
+                    doubles[i][rows] = 0;
+                    break;
+                }
+            }
+        }
+
+        private void writeBlock() throws IOException
+        {
+            out.writeInt(rows);
+            for (List<String> strings : newStrings)
+            {
+                out.writeInt(strings.size());
+                for (String value : strings)
+                {
+                    out.writeUTF(value);
+                }
+                strings.clear();
+            }
+            for (int i = 0; i < columns.size(); i++)
+            {
+                switch (columns.get(i).type())
+                {
+                case STRING:
+                    out.writeInt(rows * Integer.BYTES);
+                    for (int row = 0; row < rows; row++) out.writeInt(codes[i][row]);
+                    break;
+                case TIMESTAMP:
+                    out.writeInt(rows * Long.BYTES);
+                    for (int row = 0; row < rows; row++) out.writeLong(longs[i][row]);
+                    break;
+                case CLOCK:
+                    out.writeInt(rows * Double.BYTES);
+                    for (int row = 0; row < rows; row++) out.writeDouble(doubles[i][row]);
+                    break;
+                }
+            }
+            rows = 0;
+        }
+
+        /**
+         * Write the remaining rows and close the file.
+         */
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                if (rows > 0)
+                {
+                    writeBlock();
+                }
+                out.writeInt(0); // end of data
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Reads selected columns from a file, a block of rows at a time.
+     */
+    public static class Reader implements Closeable
+    {
+        private final DataInputStream in;
+        private final List<Column> fileColumns = new ArrayList<>();
+
+        // for each file column, the index in the requested columns or -1
+        private final int[] selected;
+        // for each requested column, the index in the file columns
+        private final int[] fileColumn;
+        private final Map<String, Integer> requested = new HashMap<>();
+        private final Type[] types;
+
+        // strings for each file column, by code
+        private final List<List<String>> strings = new ArrayList<>();
+
+        // values for the current block, by requested column
+        private final int[][] codes;
+        private final long[][] longs;
+        private final double[][] doubles;
+        private int rows = 0;
+        private boolean finished = false;
+
+        private Reader(String name, String... columnNames) throws IOException
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(name), 1024 * 1024));
+            byte[] magic = new byte[MAGIC.length()];
+            in.readFully(magic);
+            if (!MAGIC.equals(new String(magic, "US-ASCII")) || in.readInt() != VERSION)
+            {
+                in.close();
+                throw new IOException("Not a transaction columns file: " + name);
+            }
+            int columnCount = in.readInt();
+            for (int i = 0; i < columnCount; i++)
+            {
+                Type type = Type.values()[in.readByte()];
+                fileColumns.add(new Column(in.readUTF(), type));
+                strings.add(new ArrayList<>());
+            }
+
+            selected = new int[columnCount];
+            Arrays.fill(selected, -1);
+            fileColumn = new int[columnNames.length];
+            types = new Type[columnNames.length];
+            for (int i = 0; i < columnNames.length; i++)
+            {
+                fileColumn[i] = indexOf(columnNames[i]);
+                if (fileColumn[i] < 0)
+                {
+                    in.close();
+                    throw new IllegalArgumentException("Column not found: " + columnNames[i]);
+                }
+                selected[fileColumn[i]] = i;
+                requested.put(columnNames[i], i);
+                types[i] = fileColumns.get(fileColumn[i]).type();
+            }
+            codes = new int[columnNames.length][];
+            longs = new long[columnNames.length][];
+            doubles = new double[columnNames.length][];
+        }
+
+        private int indexOf(String name)
+        {
+            for (int i = 0; i < fileColumns.size(); i++)
+            {
+                if (fileColumns.get(i).name().equals(name)) return i;
+            }
+            return -1;
+        }
+
+        /**
+         * The columns in the file
+         * @return the columns
+         */
+        public List<Column> columns()
+        {
+            return Collections.unmodifiableList(fileColumns);
+        }
+
+        /**
+         * Get the index of a requested column, used to get values
+         * @param name the column name
+         * @return the column index
+         */
+        public int column(String name)
+        {
+            Integer index = requested.get(name);
+            if (index == null)
+            {
+                throw new IllegalArgumentException("Column not requested: " + name);
+            }
+            return index;
+        }
+
+        /**
+         * Read the next block of rows
+         * @return true if a block was read, false at the end of the file
+         * @throws IOException if the file can't be read
+         */
+        public boolean nextBlock() throws IOException
+        {
+            if (finished) return false;
+            rows = in.readInt();
+            if (rows == 0)
+            {
+                finished = true;
+                return false;
+            }
+            for (List<String> columnStrings : strings)
+            {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++)
+                {
+                    columnStrings.add(in.readUTF());
+                }
+            }
+            for (int i = 0; i < fileColumns.size(); i++)
+            {
+                int length = in.readInt();
+                int column = selected[i];
+                if (column < 0)
+                {
+                    skip(length);
+                    continue;
+                }
+                switch (types[column])
+                {
+                case STRING:
+                    codes[column] = grow(codes[column]);
+                    for (int row = 0; row < rows; row++) codes[column][row] = in.readInt();
+                    break;
+                case TIMESTAMP:
+                    longs[column] = grow(longs[column]);
+                    for (int row = 0; row < rows; row++) longs[column][row] = in.readLong();
+                    break;
+                case CLOCK:
+                    doubles[column] = grow(doubles[column]);
+                    for (int row = 0; row < rows; row++) doubles[column][row] = in.readDouble();
+                    break;
+                }
+            }
+            return true;
+        }
+
+        private void skip(int length) throws IOException
+        {
+            while (length > 0)
+            {
+                int skipped = in.skipBytes(length);
+                if (skipped <= 0)
+                {
+                    throw new EOFException();
+                }
+                length -= skipped;
+            }
+        }
+
+        private int[] grow(int[] array) { return array != null && array.length >= rows ? array : new int[rows]; }
+        private long[] grow(long[] array) { return array != null && array.length >= rows ? array : new long[rows]; }
+        private double[] grow(double[] array) { return array != null && array.length >= rows ? array : new double[rows]; }
+
+        /**
+         * The number of rows in the current block
+         */
+        public int size()
+        {
+            return rows;
+        }
+
+        public String string(int column, int row)
+        {
+            return decode(column, codes[column][row]);
+        }
+
+        /**
+         * Get the code for a string value. Codes are the same for the
+         * same string throughout the file, so they can be used to group
+         * rows without creating the strings.
+         */
+        public int code(int column, int row)
+        {
+            return codes[column][row];
+        }
+
+        public String decode(int column, int code)
+        {
+            return strings.get(fileColumn[column]).get(code);
+        }
+
+        /**
+         * Get a timestamp value
+         * @return microseconds since 1970-01-01 UTC
+         */
+        public long timestamp(int column, int row)
+        {
+            return longs[column][row];
+        }
+
+        /**
+         * Get a clock value
+         * @return the clock time in seconds
+         */
+        public double clock(int column, int row)
+        {
+            return doubles[column][row];
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}